@@ -16,67 +16,258 @@ public class Campus {
     /** Case-insensitive key -> Location. */
     private final Map<String, Location> locations = new LinkedHashMap<>();
     /** Case-insensitive key -> Item definition (may exist but not be placed in any location). */
-    private final Map<String, Item> itemDefinitions = new LinkedHashMap<>();
+    private final Map<String, ItemDefinition> itemDefinitions = new LinkedHashMap<>();
     /** List of persons on campus. */
     private final List<Person> persons = new ArrayList<>();
     /** Display name (optional). */
     private final String name;
+    /** Locations in insertion order, indexed by Location.getId(). */
+    private final List<Location> locationList = new ArrayList<>();
+    /** Where every item on campus currently lies, kept up to date by the locations. */
+    private final ItemLocationIndex itemLocations = new ItemLocationIndex();
     /** Starting location. */
     private Location startingLocation;
+    /** True once the campus is a read-only template shared by tours. */
+    private volatile boolean frozen;
+    /** Locations by id, copied at freeze so picking one at random is a single index. */
+    private Location[] locationArray;
+    /** Nearest-shelter table (built lazily, discarded when locations or doors change). */
+    private ShelterTable shelterTable;
+    /** Fuzzy name lookups (built lazily, discarded when names are added). */
+    private volatile NameIndex<Location> locationIndex;
+    private NameIndex<ItemDefinition> itemIndex;
+    private NameIndex<Person> personIndex;
+    /** Directory of a campus whose locations are paged in on demand, or null when it is loaded whole. */
+    private final CampusPager pager;
 
     public Campus(String name) {
+        this(name, null);
+    }
+
+    private Campus(String name, CampusPager pager) {
         this.name = (name == null || name.isBlank()) ? "UMW" : name.trim();
+        this.pager = pager;
     }
 
     public String getName() { return name; }
-    public Location getStartingLocation() { return startingLocation; }
-    public void setStartingLocation(Location loc) { this.startingLocation = loc; }
+    public Location getStartingLocation() {
+        return (pager != null) ? pager.getStartingLocation() : startingLocation;
+    }
+    public void setStartingLocation(Location loc) {
+        checkNotFrozen();
+        if (pager != null) {
+            pager.setStartingId(loc.getId());
+            return;
+        }
+        this.startingLocation = loc;
+    }
+
+    /**
+     * The directory of a paged campus (see paged), for its statistics.
+     * @return pager, or null when the whole campus is loaded
+     */
+    public CampusPager getPager() { return pager; }
+
+    /**
+     * Freezes the campus into an immutable template that any number of tours
+     * can share across threads. The lookup tables tours use are built now so reads
+     * never write, and every location and door refuses further changes; each
+     * tour records its own changes in a WorldState such as SessionOverlay.
+     */
+    public void freeze() {
+        if (frozen) return;
+        if (pager != null) {
+            // paged-in locations are frozen as they are made
+            pager.seal();
+            getShelterTable();
+            getItemIndex();
+            getPersonIndex();
+            frozen = true;
+            return;
+        }
+        getShelterTable();
+        getItemIndex();
+        getPersonIndex();
+        locationArray = locationList.toArray(new Location[0]);
+        for (Location loc : locationList) {
+            for (Door d : loc.getDoors()) d.freeze();
+            loc.freeze();
+        }
+        frozen = true;
+    }
+
+    /** Returns whether the campus has been frozen into a template. */
+    public boolean isFrozen() { return frozen; }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("Campus \"" + name + "\" is a frozen template");
+    }
+
+    /** Marker that flags a location as indoors. */
+    private static final java.util.regex.Pattern BUILDING_MARKER =
+            java.util.regex.Pattern.compile("(?i)\\[building\\]");
+    /** Bracketed qualifier such as "[building]" in a location name. */
+    private static final java.util.regex.Pattern QUALIFIER =
+            java.util.regex.Pattern.compile("\\s*\\[.*?\\]\\s*");
+    /** Line starting a region of the Locations section: "Region: North Campus". */
+    private static final java.util.regex.Pattern REGION_LINE =
+            java.util.regex.Pattern.compile("(?i)^region:\\s*(.*)$");
+    /** Item name with an optional transform target: "Cookie (Crumbs)". */
+    private static final java.util.regex.Pattern TRANSFORM_SUFFIX =
+            java.util.regex.Pattern.compile("^(.*?)\\s*\\(([^)]+)\\)\\s*$");
 
     /** Normalize a location key: trim + lowercase. */
     private static String keyFor(String s) { return s == null ? "" : s.trim().toLowerCase(); }
 
     /** Adds a location (case-insensitive key). */
     public void addLocation(Location loc) {
-        locations.put(keyFor(loc.getName()), loc);
+        addLocation(loc, null);
+    }
+
+    /** Adds a location listed under a "Region:" line; only a paged campus keeps the region. */
+    private void addLocation(Location loc, String region) {
+        checkNotFrozen();
+        if (pager != null) {
+            // only the directory entry is kept; the location is made again when paged in
+            loc.setId(pager.define(loc.getName(), loc.getDescription(), loc.isIndoors(), region));
+            shelterTable = null;
+            return;
+        }
+        Location previous = locations.put(keyFor(loc.getName()), loc);
+        if (previous != null) {
+            itemLocations.removeLocation(previous);
+            previous.setItemIndex(null);
+        }
+        itemLocations.addLocation(loc);
+        loc.setItemIndex(itemLocations);
+        if (previous != null && previous.getId() >= 0) {
+            // same name defined again: the new location takes over the old slot
+            loc.setId(previous.getId());
+            locationList.set(previous.getId(), loc);
+        } else {
+            loc.setId(locationList.size());
+            locationList.add(loc);
+        }
+        shelterTable = null;
+        locationIndex = null;
+    }
+
+    /** Returns the locations map; on a paged campus each location is paged in as it is read. */
+    public Map<String, Location> getLocations() {
+        return (pager != null) ? pager.asMap() : locations;
+    }
+
+    /** Returns all locations in id order (read-only); on a paged campus each is paged in as it is read. */
+    public List<Location> getLocationList() {
+        return (pager != null) ? pager.asList() : Collections.unmodifiableList(locationList);
+    }
+
+    /**
+     * The location with an id, paging it in if the campus is paged.
+     * @param id location id
+     * @return location
+     */
+    public Location locationAt(int id) {
+        return (pager != null) ? pager.location(id) : locationList.get(id);
+    }
+
+    /**
+     * Whether a location belongs to this campus (and not, say, to an older
+     * version of it). Never pages anything in.
+     * @param loc location
+     * @return true if it is this campus's location for its id
+     */
+    public boolean owns(Location loc) {
+        if (pager != null) return pager.owns(loc);
+        return loc != null && loc.getId() >= 0 && loc.getId() < locationList.size() && locationList.get(loc.getId()) == loc;
+    }
+
+    /**
+     * Picks a location uniformly at random.
+     * @param rng random source
+     * @return a location, or null if the campus has none
+     */
+    public Location randomLocation(TourRandom rng) {
+        if (pager != null) return (pager.size() == 0) ? null : pager.location(rng.nextInt(pager.size()));
+        Location[] all = locationArray;
+        if (all == null) all = locationList.toArray(new Location[0]);
+        return (all.length == 0) ? null : all[rng.nextInt(all.length)];
     }
 
-    /** Returns the locations map. */
-    public Map<String, Location> getLocations() { return locations; }
+    /**
+     * Returns the nearest-shelter table for this campus, building it on first use.
+     * @return shelter table covering every location
+     */
+    public ShelterTable getShelterTable() {
+        if (shelterTable == null) shelterTable = ShelterTable.build(this);
+        return shelterTable;
+    }
 
-    /** Looks up a location by (trimmed, case-insensitive) name. */
+    /** Looks up a location by (trimmed, case-insensitive) name, paging it in if the campus is paged. */
     public Location getLocation(String name) {
-        Location loc = locations.get(keyFor(name));
-        if (loc != null) return loc;
-        // If not found, try stripping any bracketed qualifiers such as "[building]"
-        if (name != null) {
-            String stripped = name.replaceAll("(?i)\\s*\\[.*?\\]\\s*", "").trim();
-            if (!stripped.isEmpty() && !stripped.equals(name.trim())) {
-                loc = locations.get(keyFor(stripped));
-            }
+        String key = keyOf(name);
+        if (key == null) return null;
+        return (pager != null) ? pager.location(pager.idOf(key)) : locations.get(key);
+    }
+
+    /** Whether there is a location by this name; never pages anything in. */
+    private boolean hasLocation(String name) { return keyOf(name) != null; }
+
+    /**
+     * The key a location is stored under, trying the name without any bracketed
+     * qualifiers such as "[building]" if it is not found as given.
+     * @return key, or null if there is no location by that name
+     */
+    private String keyOf(String name) {
+        String key = keyFor(name);
+        if (isKey(key)) return key;
+        if (name != null && name.indexOf('[') >= 0) {
+            String stripped = QUALIFIER.matcher(name).replaceAll("").trim();
+            if (!stripped.isEmpty() && !stripped.equals(name.trim()) && isKey(keyFor(stripped))) return keyFor(stripped);
         }
-        return loc;
+        return null;
+    }
+
+    private boolean isKey(String key) {
+        return (pager != null) ? pager.idOf(key) >= 0 : locations.containsKey(key);
     }
 
     /** Adds a door; throws with a helpful message if endpoints are missing. */
     public void addDoor(char dir, String fromName, String toName) {
-        Location from = getLocation(fromName);
-        Location to = getLocation(toName);
-        if (from == null || to == null) {
+        checkNotFrozen();
+        String fromKey = keyOf(fromName);
+        String toKey = keyOf(toName);
+        if (fromKey == null || toKey == null) {
+            boolean fromMissing = fromKey == null, toMissing = toKey == null;
             StringBuilder known = new StringBuilder();
-            boolean first = true;
-            for (Location l : locations.values()) {
-                if (!first) known.append(", ");
-                known.append(l.getName());
-                first = false;
+            int n = (pager != null) ? pager.size() : locationList.size();
+            for (int i = 0; i < n; i++) {
+                if (i > 0) known.append(", ");
+                known.append((pager != null) ? pager.nameOf(i) : locationList.get(i).getName());
             }
             throw new IllegalArgumentException(
                     "Invalid door endpoints. from=\"" + fromName + "\" -> to=\"" + toName + "\" dir=" + dir +
-                            ". Missing: " + (from == null ? "[from]" : "") + (from == null && to == null ? " & " : "") +
-                            (to == null ? "[to]" : "") +
+                            ". Missing: " + (fromMissing ? "[from]" : "") + (fromMissing && toMissing ? " & " : "") +
+                            (toMissing ? "[to]" : "") +
                             ". Known locations: " + known
             );
         }
-        from.addDoor(new Door(dir, from, to));
+        if (pager != null) {
+            pager.addDoor(pager.idOf(fromKey), dir, pager.idOf(toKey));
+        } else {
+            Location from = locations.get(fromKey);
+            from.addDoor(new Door(dir, from, locations.get(toKey)));
+        }
+        shelterTable = null;
+    }
+
+    /** Lays one copy of an item at a location known to exist. */
+    private void placeItem(ItemDefinition def, String locName) {
+        if (pager != null) {
+            pager.placeItem(def, pager.idOf(keyOf(locName)));
+        } else {
+            getLocation(locName).addItem(new Item(def));
+        }
     }
 
     /**
@@ -85,72 +276,105 @@ public class Campus {
      * - Door triplets as either (from, to, dir) OR (from, dir, to)
      * - Stray label lines "Locations:", "Doors:", "Items:" inside sections/blocks
      * - Case-insensitive, trimmed location names
+     * - "Region: name" as the first line of a location block, putting that
+     *   location and the ones after it in the named region (see paged)
      */
     public static Campus fromFile(File f) throws IOException {
+        return fromFile(f, null);
+    }
+
+    /**
+     * Loads a campus too big to keep whole in memory. Only a compact
+     * directory of its locations is kept (see CampusPager); locations, their
+     * doors and their items are made a region at a time as tours reach them,
+     * and regions not used lately are let go once their estimated size
+     * passes the budget. The campus is frozen, like one from fromFile.
+     * @param f campus data file, in the format fromFile reads
+     * @param heapBudget estimated heap bytes of regions to keep loaded
+     * @return paged campus
+     */
+    public static Campus paged(File f, long heapBudget) throws IOException {
+        return load(f, null, new CampusPager(heapBudget));
+    }
+
+    /**
+     * Loads a Campus, optionally recording every problem found along the way.
+     * With a report, bad door endpoints, unknown item or person locations and
+     * malformed blocks are recorded (with line numbers) and skipped instead of
+     * stopping the load at the first one.
+     * @param f campus data file
+     * @param report problem sink, or null for the strict behaviour of fromFile(File)
+     * @return loaded campus
+     */
+    public static Campus fromFile(File f, LoadReport report) throws IOException {
+        return load(f, report, null);
+    }
+
+    private static Campus load(File f, LoadReport report, CampusPager pager) throws IOException {
+        PhaseTimer phases = new PhaseTimer("campus", f.getName());
         List<String> lines = readAll(f);
-        // Split into sections by "*****"
-        List<List<String>> sections = splitOn(lines, "*****");
+        phases.done("read");
+        // Split into sections by "*****"; sections and blocks are [start, end) line ranges
+        List<int[]> sections = splitOn(lines, 0, lines.size(), "*****");
         if (sections.size() < 3)
             throw new IllegalArgumentException("Expected at least 3 sections: Title, Locations, Doors; Items optional.");
 
         // Title
-        String title = firstNonBlank(sections.get(0));
-        Campus campus = new Campus(title);
+        String title = firstNonBlank(lines, sections.get(0));
+        Campus campus = new Campus(title, pager);
 
         // LOCATIONS
-        List<String> locSection = new ArrayList<>(sections.get(1));
-        removeLabelLines(locSection, "Locations:");
-        List<List<String>> locBlocks = splitOn(locSection, "+++");
         Location firstLoc = null;
-        for (List<String> rawBlock : locBlocks) {
-            List<String> nb = nonBlank(rawBlock);
-            if (nb.isEmpty()) continue;
+        String region = null;
+        for (int[] block : splitOn(lines, sections.get(1), "+++")) {
+            int[] nb = fieldLines(lines, block, "Locations:");
+            if (nb.length == 0) continue;
+            java.util.regex.Matcher rm = REGION_LINE.matcher(lines.get(nb[0]).trim());
+            if (rm.matches()) {
+                region = rm.group(1).trim();
+                nb = Arrays.copyOfRange(nb, 1, nb.length);
+                if (nb.length == 0) continue;
+            }
             // name = first line, description = remainder joined with newlines
-            String name = nb.get(0).trim();
-            String desc = join(nb.subList(1, nb.size()), System.lineSeparator()).trim();
+            String name = lines.get(nb[0]).trim();
+            String desc = join(lines, nb, 1, System.lineSeparator()).trim();
 
             boolean indoors = false;
             // allow a marker token [building] in either the name or the description to mark indoor locations
             if (name.toLowerCase().contains("[building]")) {
                 indoors = true;
-                name = name.replaceAll("(?i)\\[building\\]", "").trim();
+                name = BUILDING_MARKER.matcher(name).replaceAll("").trim();
             }
             if (desc.toLowerCase().contains("[building]")) {
                 indoors = true;
-                desc = desc.replaceAll("(?i)\\[building\\]", "").trim();
+                desc = BUILDING_MARKER.matcher(desc).replaceAll("").trim();
+            }
+            if (report != null && campus.locations.containsKey(keyFor(name))) {
+                report.warning(nb[0] + 1, "location \"" + name + "\" is defined more than once; the last definition wins");
             }
             Location loc = new Location(name, desc, indoors);
-            campus.addLocation(loc);
+            campus.addLocation(loc, region);
+            if (report != null) report.locationDefined(loc, nb[0] + 1);
             if (firstLoc == null) firstLoc = loc;
         }
         if (firstLoc == null) throw new IllegalArgumentException("No locations found.");
         campus.setStartingLocation(firstLoc);
+        phases.done("locations");
 
         // DOORS
-        List<String> doorSection = new ArrayList<>(sections.get(2));
-        removeLabelLines(doorSection, "Doors:");
-        // Normalize delimiters and strip stray markers (e.g., "Master Key" used for locks in data)
-        List<String> normalizedDoorSection = new ArrayList<>();
-        for (String ln : doorSection) {
-            String t = ln.trim();
-            if (t.equalsIgnoreCase("Master Key")) {
-                // ignore lock marker in door parsing; locking handled elsewhere
+        // "++" is accepted as a block delimiter, and "Master Key" lock markers are ignored
+        // in door parsing; locking handled elsewhere
+        for (int[] block : splitOn(lines, sections.get(2), "+++", "++")) {
+            int[] nb = fieldLines(lines, block, "Doors:", "Master Key");
+            if (nb.length < 3) {
+                if (report != null && nb.length > 0)
+                    report.error(nb[0] + 1, "door block needs three lines (from, direction, to) but has " + nb.length);
                 continue;
             }
-            if (t.equals("++") || t.equals("++")) {
-                normalizedDoorSection.add("+++");
-            } else {
-                normalizedDoorSection.add(ln);
-            }
-        }
-        List<List<String>> doorBlocks = splitOn(normalizedDoorSection, "+++");
-        for (List<String> rawBlock : doorBlocks) {
-            List<String> nb = nonBlank(rawBlock);
-            if (nb.size() < 3) continue;
 
-            String a = nb.get(0).trim();
-            String b = nb.get(1).trim();
-            String c = nb.get(2).trim();
+            String a = lines.get(nb[0]).trim();
+            String b = lines.get(nb[1]).trim();
+            String c = lines.get(nb[2]).trim();
 
             String from, to; char dir;
             // Accept either (from, dir, to) OR (from, to, dir)
@@ -160,95 +384,169 @@ public class Campus {
                 from = a; to = b; dir = toDir(c);
             } else {
                 // ignore malformed block instead of crashing
+                if (report != null)
+                    report.error(nb[0] + 1, "door block from \"" + a + "\" has no direction line (n, s, e or w)");
+                continue;
+            }
+            if (report == null) {
+                campus.addDoor(dir, from, to);
                 continue;
             }
-            campus.addDoor(dir, from, to);
+            if (nb.length > 3) {
+                report.warning(nb[3] + 1, "extra lines in door block from \"" + from + "\" are ignored");
+            }
+            boolean missingFrom = campus.getLocation(from) == null;
+            boolean missingTo = campus.getLocation(to) == null;
+            if (missingFrom) report.error(nb[0] + 1, "door leads from unknown location \"" + from + "\"");
+            if (missingTo) report.error(nb[0] + 1, "door from \"" + from + "\" leads to unknown location \"" + to + "\"");
+            if (!missingFrom && !missingTo) campus.addDoor(dir, from, to);
         }
 
+        phases.done("doors");
+
         // ITEMS (optional)
         if (sections.size() >= 4) {
-            List<String> itemSection = new ArrayList<>(sections.get(3));
-            removeLabelLines(itemSection, "Items:");
-            List<List<String>> itemBlocks = splitOn(itemSection, "+++");
-            for (List<String> rawBlock : itemBlocks) {
-                List<String> nb = nonBlank(rawBlock);
-                if (nb.size() < 3) continue;
-                String itemNameRaw = nb.get(0).trim();
-                String locName  = nb.get(1).trim();
-                String message  = nb.get(2).trim();
+            Map<String, Integer> definedAt = (report == null) ? null : new HashMap<>();
+            for (int[] block : splitOn(lines, sections.get(3), "+++")) {
+                int[] nb = fieldLines(lines, block, "Items:");
+                if (nb.length < 3) {
+                    if (report != null && nb.length > 0)
+                        report.error(nb[0] + 1, "item block needs three lines (name, location, message) but has " + nb.length);
+                    continue;
+                }
+                String itemNameRaw = lines.get(nb[0]).trim();
+                String locName  = lines.get(nb[1]).trim();
+                String message  = lines.get(nb[2]).trim();
 
                 // Detect optional transform target in parentheses within the item name: "Cookie (Crumbs)"
                 String itemName = itemNameRaw;
                 String transformTarget = null;
-                java.util.regex.Matcher m = java.util.regex.Pattern.compile("^(.*?)\\s*\\(([^)]+)\\)\\s*$").matcher(itemNameRaw);
+                java.util.regex.Matcher m = TRANSFORM_SUFFIX.matcher(itemNameRaw);
                 if (m.find()) {
                     itemName = m.group(1).trim();
                     transformTarget = m.group(2).trim();
                 }
+                if (report != null) {
+                    definedAt.put(keyFor(itemName), nb[0] + 1);
+                    if (nb.length > 3)
+                        report.warning(nb[3] + 1, "item block for \"" + itemName + "\" has " + nb.length
+                                + " lines; only the first three are read (missing \"+++\" separator?)");
+                }
 
                 // Create definition and register it
-                Item def = new Item(itemName, message);
-                if (transformTarget != null && !transformTarget.isEmpty()) def.setTransformTarget(transformTarget);
+                if (transformTarget != null && transformTarget.isEmpty()) transformTarget = null;
+                ItemDefinition def = new ItemDefinition(itemName, message, transformTarget, null);
                 campus.registerItemDefinition(def);
 
-                // If location is "none", do not place the item anywhere; otherwise place a copy at the location
+                // If location is "none", do not place the item anywhere; otherwise place an instance at the location
                 if (!locName.equalsIgnoreCase("none")) {
-                    Location where = campus.getLocation(locName);
-                    if (where == null) {
+                    if (!campus.hasLocation(locName)) {
+                        if (report != null) {
+                            report.error(nb[1] + 1, "item \"" + itemName + "\" is placed in unknown location \"" + locName + "\"");
+                            continue;
+                        }
                         throw new IllegalArgumentException("Item location not found: \"" + locName + "\" for item \"" + itemName + "\"");
                     }
-                    Item placed = new Item(def.getName(), def.getMessage());
-                    placed.setActionTwo(def.getActionTwo());
-                    placed.setTransformTarget(def.getTransformTarget());
-                    where.addItem(placed);
+                    campus.placeItem(def, locName);
+                    if (report != null) report.itemPlaced(itemName, campus.getLocation(locName), nb[1] + 1);
+                }
+            }
+            if (report != null) {
+                for (ItemDefinition def : campus.itemDefinitions.values()) {
+                    String tgt = def.getTransformTarget();
+                    if (tgt != null && campus.getItemDefinition(tgt) == null) {
+                        report.warning(definedAt.get(keyFor(def.getName())), "item \"" + def.getName()
+                                + "\" transforms into \"" + tgt + "\", which is not defined");
+                    }
                 }
             }
         }
 
+        phases.done("items");
+
         // PEOPLE (optional)
         if (sections.size() >= 5) {
-            List<String> peopleSection = new ArrayList<>(sections.get(4));
-            removeLabelLines(peopleSection, "People:");
-            List<List<String>> peopleBlocks = splitOn(peopleSection, "+++");
-            for (List<String> rawBlock : peopleBlocks) {
-                List<String> nb = nonBlank(rawBlock);
-                if (nb.size() < 3) continue;
-                   String personName = nb.get(0).trim();
-                   String personLocation = nb.get(1).trim();
-                String dialogue = nb.size() > 3 ? nb.get(3).trim() : "";
-
-                   Person person = new Person(personName, personLocation, dialogue);
+            for (int[] block : splitOn(lines, sections.get(4), "+++")) {
+                int[] nb = fieldLines(lines, block, "People:");
+                if (nb.length < 3) {
+                    if (report != null && nb.length > 0)
+                        report.error(nb[0] + 1, "person block needs at least three lines (name, location, role) but has " + nb.length);
+                    continue;
+                }
+                String personName = lines.get(nb[0]).trim();
+                String personLocation = lines.get(nb[1]).trim();
+                String role = lines.get(nb[2]).trim();
+                String dialogue = nb.length > 3 ? lines.get(nb[3]).trim() : "";
+
+                Person person = new Person(personName, personLocation, dialogue, role);
                 campus.addPerson(person);
+                if (report != null) {
+                    Location where = campus.getLocation(personLocation);
+                    if (where == null) {
+                        report.error(nb[1] + 1, "person \"" + personName + "\" is at unknown location \"" + personLocation + "\"");
+                    } else {
+                        report.personPlaced(personName, where, nb[1] + 1);
+                    }
+                }
             }
         }
 
+        phases.done("people");
+
+        campus.freeze();
+        phases.done("freeze");
         return campus;
     }
 
     public Item getItemFromList(String itemName) {
-        if (startingLocation != null) {
-            return startingLocation.getItemNamed(itemName);
+        Location start = getStartingLocation();
+        if (start != null) {
+            return start.getItemNamed(itemName);
         }
         return null;
     }
 
     /** Registers an item definition for later lookup. */
-    public void registerItemDefinition(Item it) {
-        if (it == null || it.getName() == null) return;
-        itemDefinitions.put(keyFor(it.getName()), it);
+    public void registerItemDefinition(ItemDefinition def) {
+        if (def == null || def.getName() == null) return;
+        checkNotFrozen();
+        itemDefinitions.put(def.getKey(), def);
+        itemIndex = null;
+    }
+
+    /** All registered item definitions, in the order they were registered. */
+    public Collection<ItemDefinition> getItemDefinitions() {
+        return Collections.unmodifiableCollection(itemDefinitions.values());
     }
 
     /** Looks up a registered item definition by name (case-insensitive). */
-    public Item getItemDefinition(String name) {
+    public ItemDefinition getItemDefinition(String name) {
         if (name == null) return null;
         return itemDefinitions.get(keyFor(name));
     }
 
+    /**
+     * Locations currently holding the named item, with the number of copies in each.
+     * Runs in time proportional to the number of locations returned; on a
+     * paged campus each of them is paged in.
+     * @param itemName item name (case-insensitive)
+     * @return read-only map, empty if the item is not lying anywhere on campus
+     */
+    public Map<Location, Integer> getItemLocations(String itemName) {
+        if (pager != null) return pager.itemLocations(itemName);
+        return itemLocations.locationsOf(itemName);
+    }
+
     /** Adds a person to campus. */
     public void addPerson(Person p) {
+        checkNotFrozen();
         if (p != null) persons.add(p);
+        personIndex = null;
     }
 
+    /** All people on campus. */
+    public List<Person> getPersons() { return Collections.unmodifiableList(persons); }
+
     /** Finds a person by name at a specific location. */
     public Person getPersonAtLocation(String personName, String locationName) {
         if (personName == null || locationName == null) return null;
@@ -270,6 +568,54 @@ public class Campus {
         return out;
     }
 
+    /**
+     * Name index over all locations, for resolving misspelled or partial names.
+     * No player command takes a location name, so unlike the item and person
+     * indexes it is not built at freeze but on first use; on a frozen campus
+     * two threads may both build it, and either copy will do. A paged campus
+     * has none, since the index would hold every location loaded.
+     * @return location name index
+     * @throws IllegalStateException if the campus is paged
+     */
+    public NameIndex<Location> getLocationIndex() {
+        if (pager != null) throw new IllegalStateException("Campus \"" + name + "\" is paged and has no location index");
+        NameIndex<Location> idx = locationIndex;
+        if (idx == null) {
+            idx = new NameIndex<>();
+            for (Location l : locationList) idx.add(l.getName(), l);
+            locationIndex = idx;
+        }
+        return idx;
+    }
+
+    /**
+     * Name index over all item definitions.
+     * @return item name index
+     */
+    public NameIndex<ItemDefinition> getItemIndex() {
+        if (itemIndex == null) {
+            NameIndex<ItemDefinition> idx = new NameIndex<>();
+            for (ItemDefinition def : itemDefinitions.values()) idx.add(def.getName(), def);
+            itemIndex = idx;
+        }
+        return itemIndex;
+    }
+
+    /**
+     * Name index over all persons; a person can also be found by their role ("prof").
+     * @return person name index
+     */
+    public NameIndex<Person> getPersonIndex() {
+        if (personIndex == null) {
+            NameIndex<Person> idx = new NameIndex<>();
+            for (Person p : persons) {
+                idx.add(p.getName(), p);
+                if (p.getRole() != null && !p.getRole().isBlank()) idx.addAlias(p.getRole(), p.getName(), p);
+            }
+            personIndex = idx;
+        }
+        return personIndex;
+    }
 
     private static boolean isDirToken(String s) {
         if (s == null || s.isBlank()) return false;
@@ -278,13 +624,6 @@ public class Campus {
     }
     private static char toDir(String s) { return s.trim().toLowerCase().charAt(0); }
 
-    private static void removeLabelLines(List<String> lines, String label) {
-        for (ListIterator<String> it = lines.listIterator(); it.hasNext(); ) {
-            String ln = it.next();
-            if (ln.trim().equalsIgnoreCase(label)) it.set(""); // blank it; will be removed by nonBlank later
-        }
-    }
-
     private static List<String> readAll(File f) throws IOException {
         ArrayList<String> out = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(f))) {
@@ -294,37 +633,62 @@ public class Campus {
         return out;
     }
 
-    private static List<List<String>> splitOn(List<String> lines, String delim) {
-        ArrayList<List<String>> res = new ArrayList<>();
-        ArrayList<String> cur = new ArrayList<>();
-        for (String s : lines) {
-            if (s.trim().equals(delim)) {
-                res.add(cur);
-                cur = new ArrayList<>();
-            } else {
-                cur.add(s);
+    /**
+     * Splits the line range [from, to) on delimiter lines (compared trimmed).
+     * @return the [start, end) ranges between delimiters, in order
+     */
+    private static List<int[]> splitOn(List<String> lines, int from, int to, String... delims) {
+        ArrayList<int[]> res = new ArrayList<>();
+        int start = from;
+        for (int i = from; i < to; i++) {
+            String t = lines.get(i).trim();
+            for (String delim : delims) {
+                if (t.equals(delim)) {
+                    res.add(new int[] { start, i });
+                    start = i + 1;
+                    break;
+                }
             }
         }
-        res.add(cur);
+        res.add(new int[] { start, to });
         return res;
     }
 
-    private static String firstNonBlank(List<String> lines) {
-        for (String s : lines) if (!s.trim().isEmpty()) return s;
-        return null;
+    private static List<int[]> splitOn(List<String> lines, int[] range, String... delims) {
+        return splitOn(lines, range[0], range[1], delims);
     }
 
-    private static List<String> nonBlank(List<String> lines) {
-        ArrayList<String> out = new ArrayList<>();
-        for (String s : lines) if (!s.trim().isEmpty()) out.add(s);
-        return out;
+    /**
+     * Returns the indexes of the non-blank lines in a range, skipping stray
+     * label/marker lines (compared trimmed, case-insensitive).
+     */
+    private static int[] fieldLines(List<String> lines, int[] range, String... skip) {
+        int[] out = new int[range[1] - range[0]];
+        int n = 0;
+        next:
+        for (int i = range[0]; i < range[1]; i++) {
+            String t = lines.get(i).trim();
+            if (t.isEmpty()) continue;
+            for (String s : skip) {
+                if (t.equalsIgnoreCase(s)) continue next;
+            }
+            out[n++] = i;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static String firstNonBlank(List<String> lines, int[] range) {
+        for (int i = range[0]; i < range[1]; i++) {
+            if (!lines.get(i).trim().isEmpty()) return lines.get(i);
+        }
+        return null;
     }
 
-    private static String join(List<String> lines, String sep) {
+    private static String join(List<String> lines, int[] idx, int fromPos, String sep) {
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < lines.size(); i++) {
-            if (i > 0) sb.append(sep);
-            sb.append(lines.get(i));
+        for (int i = fromPos; i < idx.length; i++) {
+            if (i > fromPos) sb.append(sep);
+            sb.append(lines.get(idx[i]));
         }
         return sb.toString();
     }
@@ -0,0 +1,191 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * What changed between two loads of a campus file: locations, doors, items
+ * and people added, removed or renamed. Something that disappears under one
+ * name while something identical otherwise appears under another (same
+ * description, pickup message or dialogue) counts as renamed. Tours moving
+ * to the new campus use the diff to translate old names to new ones.
+ */
+public class CampusDiff {
+    private final List<String> addedLocations = new ArrayList<>();
+    private final List<String> removedLocations = new ArrayList<>();
+    /** Lowercase old name -> new name. */
+    private final Map<String, String> renamedLocations = new LinkedHashMap<>();
+    private final List<String> addedDoors = new ArrayList<>();
+    private final List<String> removedDoors = new ArrayList<>();
+    private final List<String> addedItems = new ArrayList<>();
+    private final List<String> removedItems = new ArrayList<>();
+    private final Map<String, String> renamedItems = new LinkedHashMap<>();
+    private final List<String> addedPeople = new ArrayList<>();
+    private final List<String> removedPeople = new ArrayList<>();
+    private final Map<String, String> renamedPeople = new LinkedHashMap<>();
+    /** Renames for display, "Old -> New", per kind. */
+    private final List<String> locationRenames = new ArrayList<>();
+    private final List<String> itemRenames = new ArrayList<>();
+    private final List<String> personRenames = new ArrayList<>();
+
+    private CampusDiff() { }
+
+    /**
+     * Compares two campuses.
+     * @param before campus loaded earlier
+     * @param after campus loaded now
+     * @return the differences
+     */
+    public static CampusDiff between(Campus before, Campus after) {
+        CampusDiff d = new CampusDiff();
+        compare(before.getLocations().values(), after.getLocations().values(), Location::getName,
+                Location::getDescription, d.addedLocations, d.removedLocations, d.renamedLocations, d.locationRenames);
+        compare(before.getItemDefinitions(), after.getItemDefinitions(), ItemDefinition::getName,
+                ItemDefinition::getMessage, d.addedItems, d.removedItems, d.renamedItems, d.itemRenames);
+        compare(before.getPersons(), after.getPersons(), Person::getName,
+                Person::getDialogue, d.addedPeople, d.removedPeople, d.renamedPeople, d.personRenames);
+
+        // doors are compared after translating renamed locations, so a rename alone changes no doors
+        Set<String> oldDoors = new LinkedHashSet<>();
+        for (Location loc : before.getLocations().values()) {
+            String from = d.newNameOrOld(loc.getName());
+            for (Door door : loc.getDoors()) {
+                String to = (door.getTo() == null) ? null : d.newNameOrOld(door.getTo().getName());
+                oldDoors.add(describeDoor(from, door.getDirection(), to));
+            }
+        }
+        Set<String> newDoors = new LinkedHashSet<>();
+        for (Location loc : after.getLocations().values()) {
+            for (Door door : loc.getDoors()) {
+                String to = (door.getTo() == null) ? null : door.getTo().getName();
+                newDoors.add(describeDoor(loc.getName(), door.getDirection(), to));
+            }
+        }
+        for (String door : newDoors) if (!oldDoors.contains(door)) d.addedDoors.add(door);
+        for (String door : oldDoors) if (!newDoors.contains(door)) d.removedDoors.add(door);
+        return d;
+    }
+
+    /** Translated location name, or the old one for a removed location. */
+    private String newNameOrOld(String oldName) {
+        String n = locationName(oldName);
+        return (n == null) ? oldName : n;
+    }
+
+    private static String describeDoor(String from, char dir, String to) {
+        return from + " -" + Character.toUpperCase(dir) + "-> " + to;
+    }
+
+    private static <T> void compare(Collection<T> before, Collection<T> after, Function<T, String> name,
+            Function<T, String> body, List<String> added, List<String> removed, Map<String, String> renamed,
+            List<String> renameLines) {
+        Map<String, T> oldByName = new LinkedHashMap<>();
+        for (T t : before) oldByName.put(key(name.apply(t)), t);
+        Map<String, T> newByName = new LinkedHashMap<>();
+        for (T t : after) newByName.put(key(name.apply(t)), t);
+
+        List<T> gone = new ArrayList<>();
+        for (Map.Entry<String, T> e : oldByName.entrySet()) {
+            if (!newByName.containsKey(e.getKey())) gone.add(e.getValue());
+        }
+        // new things by body text, to recognise renames
+        Map<String, T> arrivedByBody = new HashMap<>();
+        List<T> arrived = new ArrayList<>();
+        for (Map.Entry<String, T> e : newByName.entrySet()) {
+            if (oldByName.containsKey(e.getKey())) continue;
+            arrived.add(e.getValue());
+            String b = body.apply(e.getValue());
+            if (b != null && !b.isBlank()) arrivedByBody.putIfAbsent(b, e.getValue());
+        }
+        Set<T> claimed = new LinkedHashSet<>();
+        for (T old : gone) {
+            T match = arrivedByBody.get(body.apply(old));
+            if (match != null && claimed.add(match)) {
+                renamed.put(key(name.apply(old)), name.apply(match));
+                renameLines.add(name.apply(old) + " -> " + name.apply(match));
+            } else {
+                removed.add(name.apply(old));
+            }
+        }
+        for (T t : arrived) if (!claimed.contains(t)) added.add(name.apply(t));
+    }
+
+    private static String key(String name) {
+        return (name == null) ? "" : name.trim().toLowerCase();
+    }
+
+    /**
+     * Translates a location name from the old campus to the new one.
+     * @param oldName name in the old campus
+     * @return the new name, the same name if unchanged, or null if the location was removed
+     */
+    public String locationName(String oldName) {
+        return translate(oldName, renamedLocations, removedLocations);
+    }
+
+    /**
+     * Translates an item name from the old campus to the new one.
+     * @param oldName name in the old campus
+     * @return the new name, the same name if unchanged, or null if the item was removed
+     */
+    public String itemName(String oldName) {
+        return translate(oldName, renamedItems, removedItems);
+    }
+
+    private static String translate(String oldName, Map<String, String> renamed, List<String> removed) {
+        if (oldName == null) return null;
+        String renamedTo = renamed.get(key(oldName));
+        if (renamedTo != null) return renamedTo;
+        for (String r : removed) if (r.equalsIgnoreCase(oldName)) return null;
+        return oldName;
+    }
+
+    /** True when the two campuses have the same locations, doors, items and people. */
+    public boolean isEmpty() {
+        return addedLocations.isEmpty() && removedLocations.isEmpty() && renamedLocations.isEmpty()
+                && addedDoors.isEmpty() && removedDoors.isEmpty()
+                && addedItems.isEmpty() && removedItems.isEmpty() && renamedItems.isEmpty()
+                && addedPeople.isEmpty() && removedPeople.isEmpty() && renamedPeople.isEmpty();
+    }
+
+    /**
+     * One line per kind of change, e.g. "Locations renamed: Bell Towr -> Bell Tower".
+     * @return summary, or a line saying nothing was added, removed or renamed
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "Locations added", addedLocations);
+        line(sb, "Locations removed", removedLocations);
+        line(sb, "Locations renamed", locationRenames);
+        line(sb, "Doors added", addedDoors);
+        line(sb, "Doors removed", removedDoors);
+        line(sb, "Items added", addedItems);
+        line(sb, "Items removed", removedItems);
+        line(sb, "Items renamed", itemRenames);
+        line(sb, "People added", addedPeople);
+        line(sb, "People removed", removedPeople);
+        line(sb, "People renamed", personRenames);
+        return (sb.length() == 0) ? "No locations, doors, items or people added, removed or renamed." : sb.toString().trim();
+    }
+
+    private static void line(StringBuilder sb, String label, List<String> names) {
+        if (!names.isEmpty()) sb.append(label).append(": ").append(String.join(", ", names)).append(System.lineSeparator());
+    }
+
+    public List<String> getAddedLocations() { return addedLocations; }
+    public List<String> getRemovedLocations() { return removedLocations; }
+    public List<String> getAddedDoors() { return addedDoors; }
+    public List<String> getRemovedDoors() { return removedDoors; }
+    public List<String> getAddedItems() { return addedItems; }
+    public List<String> getRemovedItems() { return removedItems; }
+    public List<String> getAddedPeople() { return addedPeople; }
+    public List<String> getRemovedPeople() { return removedPeople; }
+
+    @Override
+    public String toString() { return summary(); }
+}
@@ -0,0 +1,20 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one phase of loading a campus file (reading,
+ * locations, doors, items, people, freezing). See PhaseTimer.
+ */
+@Name("TourUMW.CampusLoad")
+@Label("Campus Load Phase")
+@Category("TourUMW")
+@Description("One phase of parsing a campus data file")
+public final class CampusLoadEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    public String phase;
+
+    @Label("File")
+    public String file;
+}
@@ -0,0 +1,474 @@
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The locations of a campus too big to keep loaded whole (see Campus.paged).
+ * While the campus is read, each location goes into a compact directory: its
+ * name, indoor flag and region, with its description kept off-heap in the
+ * TextStore, and its doors and items as location ids. Location, Door and Item
+ * objects are made only a region at a time, when something first asks for a
+ * location in that region; usually a player walking through a Door into it,
+ * since doors made here look their destination up by name on each use.
+ *
+ * A region is either every location after a "Region: name" line in the
+ * Locations section, up to the next such line, or, in a file without those
+ * lines, a set of locations connected by doors. Regions paged in are kept
+ * most recently used first, and the least recently used are let go once
+ * their estimated size passes the heap budget.
+ *
+ * Letting a region go never loses anything a tour depends on. A location a
+ * tour stands in, or has changed in its world state, is still referenced by
+ * that tour and is not collected; when its region is paged in again the same
+ * Location object is picked up rather than a copy, so tours never see two
+ * versions of a place. So the budget bounds the regions kept for later, not
+ * the locations tours are holding. The directory itself stays loaded and
+ * grows with the campus, at a couple of hundred bytes of heap per location.
+ */
+public class CampusPager {
+    /** Rough heap cost of a paged-in location (object, name, door list, item bag). */
+    private static final long LOCATION_BYTES = 340;
+    private static final long DOOR_BYTES = 48;
+    private static final long ITEM_BYTES = 64;
+
+    /** What the directory knows about one region, and its locations while it is paged in. */
+    private static final class Region {
+        int[] locations;
+        /** Doors leaving the region's locations: from id, direction, to id. */
+        int[] doorFrom;
+        char[] doorDir;
+        int[] doorTo;
+        ItemDefinition[] items;
+        int[] itemAt;
+        long bytes;
+        /** The region's locations (in the order of locations) while paged in, otherwise null. */
+        Location[] loaded;
+    }
+
+    private final long heapBudget;
+
+    // the directory, filled in while the campus is read and fixed once sealed
+    private final List<String> names = new ArrayList<>();
+    private long[] descriptionRefs = new long[64];
+    private boolean[] indoors = new boolean[64];
+    /** Region named for each location, or null. */
+    private final List<String> regionNames = new ArrayList<>();
+    private final Map<String, Integer> idByKey = new HashMap<>();
+    /** Doors as from id, direction, to id. */
+    private final List<int[]> doors = new ArrayList<>();
+    private final List<ItemDefinition> items = new ArrayList<>();
+    private final List<Integer> itemAt = new ArrayList<>();
+    private int startingId = -1;
+
+    // built by seal
+    private Region[] regions;
+    private int[] regionOf;
+    /** Position of each location within its region's arrays. */
+    private int[] slot;
+    /** Lowercase item name -> ids of the locations it lies in, once per copy. */
+    private Map<String, int[]> placements;
+
+    // everything below is guarded by this
+    /** Paged-in regions, least recently used first. */
+    private final LinkedHashMap<Region, Boolean> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    /** The Location object last made for each id, as long as anyone still holds it. */
+    private final List<WeakReference<Location>> canonical = new ArrayList<>();
+    private long pageIns;
+    private long evictions;
+
+    /**
+     * Creates an empty directory.
+     * @param heapBudget estimated bytes of paged-in regions to keep before letting the least recently used go
+     */
+    public CampusPager(long heapBudget) {
+        if (heapBudget <= 0) throw new IllegalArgumentException("Heap budget must be positive");
+        this.heapBudget = heapBudget;
+    }
+
+    private static String keyFor(String s) { return s.trim().toLowerCase(); }
+
+    private void checkNotSealed() {
+        if (regions != null) throw new IllegalStateException("Campus directory is sealed");
+    }
+
+    /**
+     * Records a location. A name defined again keeps its id and takes the new
+     * description, as Campus.addLocation does.
+     * @param name location name
+     * @param description description text
+     * @param indoor true for a building
+     * @param region name of the region it is listed under, or null
+     * @return the location's id
+     */
+    public int define(String name, String description, boolean indoor, String region) {
+        checkNotSealed();
+        String key = keyFor(name);
+        Integer id = idByKey.get(key);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            regionNames.add(region);
+            idByKey.put(key, id);
+            if (id == descriptionRefs.length) {
+                descriptionRefs = Arrays.copyOf(descriptionRefs, id * 2);
+                indoors = Arrays.copyOf(indoors, id * 2);
+            }
+        } else {
+            names.set(id, name);
+            regionNames.set(id, region);
+        }
+        descriptionRefs[id] = TextStore.getDefault().put(this, description);
+        indoors[id] = indoor;
+        return id;
+    }
+
+    /**
+     * Records a door.
+     * @param from id of the location it leaves
+     * @param dir 'n','s','e','w'
+     * @param to id of the location it leads to
+     */
+    public void addDoor(int from, char dir, int to) {
+        checkNotSealed();
+        doors.add(new int[] { from, Character.toLowerCase(dir), to });
+    }
+
+    /**
+     * Records one copy of an item lying at a location.
+     * @param def item definition
+     * @param at location id
+     */
+    public void placeItem(ItemDefinition def, int at) {
+        checkNotSealed();
+        items.add(def);
+        itemAt.add(at);
+    }
+
+    /**
+     * Sets where tours start.
+     * @param id location id
+     */
+    public void setStartingId(int id) {
+        checkNotSealed();
+        startingId = id;
+    }
+
+    /**
+     * Splits the directory into regions: by "Region:" lines if the file had
+     * any, otherwise into sets connected by doors. Nothing can be recorded
+     * after this, and locations can be paged in.
+     */
+    public synchronized void seal() {
+        if (regions != null) return;
+        int n = names.size();
+        regionOf = new int[n];
+        slot = new int[n];
+        descriptionRefs = Arrays.copyOf(descriptionRefs, n);
+        indoors = Arrays.copyOf(indoors, n);
+        for (int i = 0; i < n; i++) canonical.add(null);
+
+        boolean explicit = false;
+        for (String r : regionNames) explicit |= (r != null);
+        List<Region> out = new ArrayList<>();
+        if (explicit) {
+            Map<String, Integer> byName = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                String r = (regionNames.get(i) == null) ? "(no region)" : regionNames.get(i);
+                Integer rid = byName.get(r);
+                if (rid == null) {
+                    rid = out.size();
+                    byName.put(r, rid);
+                    out.add(new Region());
+                }
+                regionOf[i] = rid;
+            }
+        } else {
+            // union-find over doors, either direction
+            int[] parent = new int[n];
+            for (int i = 0; i < n; i++) parent[i] = i;
+            for (int[] d : doors) {
+                int x = root(parent, d[0]), y = root(parent, d[2]);
+                if (x != y) parent[Math.max(x, y)] = Math.min(x, y);
+            }
+            Map<Integer, Integer> byRoot = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                int root = root(parent, i);
+                Integer rid = byRoot.get(root);
+                if (rid == null) {
+                    rid = out.size();
+                    byRoot.put(root, rid);
+                    out.add(new Region());
+                }
+                regionOf[i] = rid;
+            }
+        }
+        Region[] rs = out.toArray(new Region[0]);
+
+        int[] sizes = new int[rs.length], doorCount = new int[rs.length], itemCount = new int[rs.length];
+        for (int i = 0; i < n; i++) slot[i] = sizes[regionOf[i]]++;
+        for (int[] d : doors) doorCount[regionOf[d[0]]]++;
+        for (int at : itemAt) itemCount[regionOf[at]]++;
+        for (int r = 0; r < rs.length; r++) {
+            Region g = rs[r];
+            g.locations = new int[sizes[r]];
+            g.doorFrom = new int[doorCount[r]];
+            g.doorDir = new char[doorCount[r]];
+            g.doorTo = new int[doorCount[r]];
+            g.items = new ItemDefinition[itemCount[r]];
+            g.itemAt = new int[itemCount[r]];
+            g.bytes = sizes[r] * LOCATION_BYTES + doorCount[r] * DOOR_BYTES + itemCount[r] * ITEM_BYTES;
+            doorCount[r] = itemCount[r] = 0;
+        }
+        for (int i = 0; i < n; i++) rs[regionOf[i]].locations[slot[i]] = i;
+        for (int[] d : doors) {
+            Region g = rs[regionOf[d[0]]];
+            int k = doorCount[regionOf[d[0]]]++;
+            g.doorFrom[k] = d[0];
+            g.doorDir[k] = (char) d[1];
+            g.doorTo[k] = d[2];
+        }
+        Map<String, List<Integer>> byItem = new HashMap<>();
+        for (int j = 0; j < items.size(); j++) {
+            int at = itemAt.get(j);
+            Region g = rs[regionOf[at]];
+            int k = itemCount[regionOf[at]]++;
+            g.items[k] = items.get(j);
+            g.itemAt[k] = at;
+            byItem.computeIfAbsent(items.get(j).getKey(), key -> new ArrayList<>()).add(at);
+        }
+        placements = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> e : byItem.entrySet()) {
+            int[] ids = new int[e.getValue().size()];
+            for (int k = 0; k < ids.length; k++) ids[k] = e.getValue().get(k);
+            placements.put(e.getKey(), ids);
+        }
+        items.clear();
+        itemAt.clear();
+        regionNames.clear();
+        regions = rs;
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /** Number of locations on the whole campus. */
+    public int size() { return names.size(); }
+
+    /**
+     * Id of a location by its (trimmed, case-insensitive) name.
+     * @param key lowercase name
+     * @return id, or -1 if there is none by that name
+     */
+    public int idOf(String key) {
+        Integer id = idByKey.get(key);
+        return (id == null) ? -1 : id;
+    }
+
+    /** Name of a location, without paging it in. */
+    public String nameOf(int id) { return names.get(id); }
+
+    /** Whether a location is a building, without paging it in. */
+    public boolean isIndoors(int id) { return indoors[id]; }
+
+    /** Number of doors on the whole campus. */
+    public int doorCount() { return doors.size(); }
+
+    /**
+     * One door, without paging anything in.
+     * @param k door number, from 0 to doorCount()
+     * @return from id, direction, to id
+     */
+    public int[] door(int k) { return doors.get(k).clone(); }
+
+    /** The location tours start in, paging in its region. */
+    public Location getStartingLocation() { return (startingId < 0) ? null : location(startingId); }
+
+    /**
+     * Finds a location by exact name, paging in its region if needed; doors
+     * made here find their destination this way.
+     * @param name location name (case-insensitive)
+     * @return the location, or null if there is none by that name
+     */
+    public Location locate(String name) {
+        int id = (name == null) ? -1 : idOf(keyFor(name));
+        return (id < 0) ? null : location(id);
+    }
+
+    /**
+     * A location by id, paging in its region if needed.
+     * @param id location id
+     * @return the location
+     */
+    public synchronized Location location(int id) {
+        if (regions == null) throw new IllegalStateException("Campus directory is not sealed yet");
+        Region r = regions[regionOf[id]];
+        if (r.loaded != null) {
+            resident.get(r); // most recently used now
+        } else {
+            pageIn(r);
+        }
+        return r.loaded[slot[id]];
+    }
+
+    /**
+     * Whether a location is the one this directory hands out for its id.
+     * Never pages anything in.
+     * @param loc location
+     * @return true if it belongs to this campus
+     */
+    public synchronized boolean owns(Location loc) {
+        if (loc == null || regions == null || loc.getId() < 0 || loc.getId() >= names.size()) return false;
+        WeakReference<Location> ref = canonical.get(loc.getId());
+        return ref != null && ref.get() == loc;
+    }
+
+    /**
+     * Locations the named item lies in, paging each in.
+     * @param itemName item name (case-insensitive)
+     * @return read-only map from location to number of copies
+     */
+    public Map<Location, Integer> itemLocations(String itemName) {
+        int[] ids = (itemName == null || placements == null) ? null : placements.get(keyFor(itemName));
+        if (ids == null) return Collections.emptyMap();
+        Map<Location, Integer> out = new LinkedHashMap<>();
+        for (int id : ids) out.merge(location(id), 1, Integer::sum);
+        return Collections.unmodifiableMap(out);
+    }
+
+    /** Every location in id order, each paged in as it is read. */
+    public List<Location> asList() {
+        return new AbstractList<Location>() {
+            @Override
+            public Location get(int index) {
+                if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("No location " + index);
+                return location(index);
+            }
+
+            @Override
+            public int size() { return CampusPager.this.size(); }
+        };
+    }
+
+    /** Every location by lowercase name, each paged in as it is read. */
+    public Map<String, Location> asMap() {
+        return new AbstractMap<String, Location>() {
+            @Override
+            public Location get(Object key) {
+                return (key instanceof String) ? locate((String) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return (key instanceof String) && idByKey.containsKey(keyFor((String) key));
+            }
+
+            @Override
+            public Set<Map.Entry<String, Location>> entrySet() {
+                return new AbstractSet<Map.Entry<String, Location>>() {
+                    @Override
+                    public int size() { return CampusPager.this.size(); }
+
+                    @Override
+                    public Iterator<Map.Entry<String, Location>> iterator() {
+                        return new Iterator<Map.Entry<String, Location>>() {
+                            private int next;
+
+                            @Override
+                            public boolean hasNext() { return next < size(); }
+
+                            @Override
+                            public Map.Entry<String, Location> next() {
+                                if (!hasNext()) throw new NoSuchElementException();
+                                int id = next++;
+                                return new AbstractMap.SimpleImmutableEntry<>(keyFor(names.get(id)), location(id));
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    /** Number of regions the campus is split into. */
+    public int getRegionCount() { return (regions == null) ? 0 : regions.length; }
+
+    public synchronized int getResidentRegionCount() { return resident.size(); }
+
+    /** Estimated heap bytes held by paged-in regions. */
+    public synchronized long getResidentBytes() { return residentBytes; }
+
+    public long getHeapBudget() { return heapBudget; }
+
+    public synchronized long getPageIns() { return pageIns; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /** Makes the region's locations, reusing any still held by a tour; caller holds the lock. */
+    private void pageIn(Region r) {
+        long start = System.nanoTime();
+        Location[] locs = new Location[r.locations.length];
+        boolean[] fresh = new boolean[locs.length];
+        for (int i = 0; i < locs.length; i++) {
+            int id = r.locations[i];
+            WeakReference<Location> ref = canonical.get(id);
+            Location l = (ref == null) ? null : ref.get();
+            if (l == null) {
+                l = new Location(names.get(id), TextStore.getDefault().get(this, descriptionRefs[id]), indoors[id]);
+                l.setId(id);
+                canonical.set(id, new WeakReference<>(l));
+                fresh[i] = true;
+            }
+            locs[i] = l;
+        }
+        // only new objects need their contents; reused ones still have theirs
+        for (int d = 0; d < r.doorFrom.length; d++) {
+            int i = slot[r.doorFrom[d]];
+            if (fresh[i]) locs[i].addDoor(new Door(r.doorDir[d], locs[i], names.get(r.doorTo[d]), this::locate));
+        }
+        for (int k = 0; k < r.items.length; k++) {
+            int i = slot[r.itemAt[k]];
+            if (fresh[i]) locs[i].addItem(new Item(r.items[k]));
+        }
+        for (int i = 0; i < locs.length; i++) {
+            if (!fresh[i]) continue;
+            for (Door d : locs[i].getDoors()) d.freeze();
+            locs[i].freeze();
+        }
+        r.loaded = locs;
+        resident.put(r, Boolean.TRUE);
+        residentBytes += r.bytes;
+        pageIns++;
+        Metrics.lap("pager.pagein", start);
+        evictOver(r);
+    }
+
+    /** Lets the least recently used regions go until within budget, never the one just needed. */
+    private void evictOver(Region keep) {
+        Iterator<Region> it = resident.keySet().iterator();
+        while (residentBytes > heapBudget && it.hasNext()) {
+            Region r = it.next();
+            if (r == keep) continue;
+            it.remove();
+            r.loaded = null;
+            residentBytes -= r.bytes;
+            evictions++;
+            Metrics.count("pager.evict");
+        }
+    }
+}
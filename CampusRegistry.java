@@ -0,0 +1,124 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The campuses one process hosts tours of, such as a campus and its night
+ * or open-day editions. All files are loaded at once, each on its own
+ * thread, so starting up takes about as long as the largest file. Each
+ * campus is known by its file name without the extension ("umw_night" for
+ * umw_night.txt) and starts as its own WorldVersion, so tours of different
+ * campuses never see each other's world. Text the campuses have in common
+ * is stored once (see TextStore), so memory grows with what is different
+ * between them rather than with how many there are.
+ *
+ * A campus that is reloaded (see CampusWatcher) moves on to a new version;
+ * the registry moves with it as campuses are asked for, so it never holds
+ * on to versions every tour has left.
+ */
+public final class CampusRegistry {
+    /** Campus names in the order their files were given. */
+    private final List<String> names;
+    /** Name -> a recent version of the campus, moved forward by get. */
+    private final ConcurrentHashMap<String, WorldVersion> campuses;
+
+    private CampusRegistry(Map<String, WorldVersion> campuses) {
+        this.names = Collections.unmodifiableList(new ArrayList<>(campuses.keySet()));
+        this.campuses = new ConcurrentHashMap<>(campuses);
+    }
+
+    /**
+     * Loads campus files in parallel.
+     * @param files campus data files; the first is the default campus
+     * @return registry
+     * @throws IOException if a file cannot be read (naming the file)
+     * @throws IllegalArgumentException if a file is malformed or two files have the same name
+     */
+    public static CampusRegistry load(List<File> files) throws IOException {
+        if (files.isEmpty()) throw new IllegalArgumentException("No campus files");
+        Map<String, File> byName = new LinkedHashMap<>();
+        for (File f : files) {
+            if (byName.put(nameOf(f), f) != null)
+                throw new IllegalArgumentException("Two campus files are named " + nameOf(f));
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = VirtualThreads.newExecutor();
+        try {
+            List<Future<Campus>> loads = new ArrayList<>();
+            for (File f : byName.values()) loads.add(executor.submit(() -> Campus.fromFile(f)));
+            Map<String, WorldVersion> campuses = new LinkedHashMap<>();
+            int i = 0;
+            for (Map.Entry<String, File> e : byName.entrySet()) {
+                campuses.put(e.getKey(), WorldVersion.initial(await(loads.get(i++), e.getValue()), null));
+            }
+            Metrics.lap("campus.loadAll", start);
+            return new CampusRegistry(campuses);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** Waits for one file's campus, passing on what went wrong under the file's name. */
+    private static Campus await(Future<Campus> load, File f) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted loading " + f, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw new IOException(f + ": " + cause.getMessage(), cause);
+            if (cause instanceof IllegalArgumentException)
+                throw new IllegalArgumentException(f + ": " + cause.getMessage(), cause);
+            throw new IllegalStateException("Loading " + f + " failed", cause);
+        }
+    }
+
+    /**
+     * The name a campus file is known by.
+     * @param f campus data file
+     * @return file name without extension, lower case
+     */
+    public static String nameOf(File f) {
+        String n = f.getName();
+        int dot = n.lastIndexOf('.');
+        return ((dot > 0) ? n.substring(0, dot) : n).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A campus by name.
+     * @param name campus name (case-insensitive)
+     * @return its latest version, or null if there is no such campus
+     */
+    public WorldVersion get(String name) {
+        if (name == null) return null;
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        WorldVersion v = campuses.get(key);
+        if (v == null) return null;
+        WorldVersion latest = v.latest();
+        // let go of the versions in between, as SessionRegistry.open does
+        if (latest != v) campuses.replace(key, v, latest);
+        return latest;
+    }
+
+    /** The campus loaded from the first file, at its latest version. */
+    public WorldVersion getDefault() {
+        return get(names.get(0));
+    }
+
+    /** Campus names in the order their files were given. */
+    public List<String> names() {
+        return names;
+    }
+
+    public int size() { return names.size(); }
+}
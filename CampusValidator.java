@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks a campus data file and reports every problem in one pass.
+ *
+ * Loading problems (malformed blocks, doors, items or people pointing at unknown
+ * locations) come from Campus.fromFile with a LoadReport. The door graph is then
+ * split into strongly connected components to find locations that cannot be
+ * reached from the starting location and one-way traps that can be entered but
+ * never left back to the start. Everything runs in O(locations + doors).
+ *
+ * Usage: java CampusValidator [--strict] [file ...]
+ * Exits with status 1 when any file has errors (or warnings, with --strict),
+ * so it can run as a CI step.
+ */
+public class CampusValidator {
+
+    /**
+     * Loads and analyzes a campus file.
+     * @param f campus data file
+     * @return report with loading and reachability problems
+     * @throws IOException if the file cannot be read
+     */
+    public static LoadReport validate(File f) throws IOException {
+        LoadReport report = new LoadReport();
+        Campus campus;
+        try {
+            campus = Campus.fromFile(f, report);
+        } catch (IllegalArgumentException e) {
+            report.error(0, e.getMessage());
+            return report;
+        }
+        analyze(campus, report);
+        return report;
+    }
+
+    /**
+     * Adds reachability problems for a loaded campus to a report.
+     * @param campus campus loaded with the same report
+     * @param report report to add to
+     */
+    public static void analyze(Campus campus, LoadReport report) {
+        List<Location> locs = campus.getLocationList();
+        int n = locs.size();
+        Location start = campus.getStartingLocation();
+        if (n == 0 || start == null) return;
+
+        // Door graph in compressed adjacency form, by location id.
+        int[] off = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            for (Door d : locs.get(i).getDoors()) {
+                if (idOf(d.getTo(), locs) >= 0) off[i + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) off[i + 1] += off[i];
+        int[] adj = new int[off[n]];
+        for (int i = 0; i < n; i++) {
+            int k = off[i];
+            for (Door d : locs.get(i).getDoors()) {
+                int to = idOf(d.getTo(), locs);
+                if (to >= 0) adj[k++] = to;
+            }
+        }
+
+        int s = start.getId();
+        boolean[] reach = reachableFrom(s, n, off, adj);
+        int[] comp = stronglyConnectedComponents(n, off, adj);
+
+        for (int i = 0; i < n; i++) {
+            Location loc = locs.get(i);
+            int line = report.locationLine(loc);
+            if (!reach[i]) {
+                report.error(line, "location \"" + loc.getName() + "\" cannot be reached from \"" + start.getName() + "\"");
+            } else if (comp[i] != comp[s]) {
+                if (off[i] == off[i + 1]) {
+                    report.error(line, "location \"" + loc.getName() + "\" is a dead end: no doors lead out of it");
+                } else {
+                    report.error(line, "location \"" + loc.getName() + "\" is a one-way trap: there is no way back to \""
+                            + start.getName() + "\" from it");
+                }
+            }
+        }
+        for (LoadReport.Placement p : report.getItemPlacements()) {
+            int id = idOf(p.getLocation(), locs);
+            if (id >= 0 && !reach[id]) {
+                report.warning(p.getLine(), "item \"" + p.getName() + "\" is in unreachable location \"" + p.getLocation().getName() + "\"");
+            }
+        }
+        for (LoadReport.Placement p : report.getPersonPlacements()) {
+            int id = idOf(p.getLocation(), locs);
+            if (id >= 0 && !reach[id]) {
+                report.warning(p.getLine(), "person \"" + p.getName() + "\" is in unreachable location \"" + p.getLocation().getName() + "\"");
+            }
+        }
+    }
+
+    private static int idOf(Location loc, List<Location> locs) {
+        if (loc == null) return -1;
+        int id = loc.getId();
+        return (id >= 0 && id < locs.size() && locs.get(id) == loc) ? id : -1;
+    }
+
+    /** Breadth-first reachability from one location. */
+    private static boolean[] reachableFrom(int s, int n, int[] off, int[] adj) {
+        boolean[] seen = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        seen[s] = true;
+        queue[tail++] = s;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = off[v]; k < off[v + 1]; k++) {
+                int w = adj[k];
+                if (!seen[w]) {
+                    seen[w] = true;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Tarjan's strongly connected components, iterative so that long corridors
+     * in generated campuses cannot overflow the call stack.
+     * @return component number by location id
+     */
+    static int[] stronglyConnectedComponents(int n, int[] off, int[] adj) {
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] comp = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(comp, -1);
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] callNode = new int[n];
+        int[] callEdge = new int[n];
+        int cp = 0;
+        int counter = 0, comps = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) continue;
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            callNode[cp] = root;
+            callEdge[cp] = off[root];
+            cp++;
+            while (cp > 0) {
+                int v = callNode[cp - 1];
+                if (callEdge[cp - 1] < off[v + 1]) {
+                    int w = adj[callEdge[cp - 1]++];
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        callNode[cp] = w;
+                        callEdge[cp] = off[w];
+                        cp++;
+                    } else if (comp[w] == -1) {
+                        // still on the stack: part of the component being built
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    cp--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--sp];
+                            comp[w] = comps;
+                        } while (w != v);
+                        comps++;
+                    }
+                    if (cp > 0) {
+                        int parent = callNode[cp - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+        return comp;
+    }
+
+    /**
+     * Validates each campus file named on the command line (default umw_campus_scavenger.txt).
+     * @param args optional "--strict" followed by file paths
+     */
+    public static void main(String[] args) {
+        boolean strict = false;
+        List<String> paths = new ArrayList<>();
+        for (String a : args) {
+            if (a.equals("--strict")) strict = true;
+            else paths.add(a);
+        }
+        if (paths.isEmpty()) paths.add("umw_campus_scavenger.txt");
+
+        boolean failed = false;
+        for (String path : paths) {
+            LoadReport report;
+            try {
+                report = validate(new File(path));
+            } catch (IOException e) {
+                System.out.println(path + ": error: cannot read file: " + e.getMessage());
+                failed = true;
+                continue;
+            }
+            for (LoadReport.Problem p : report.sortedProblems()) {
+                System.out.println(path + ":" + p.getLine() + ": " + (p.isError() ? "error: " : "warning: ") + p.getMessage());
+            }
+            System.out.println(path + ": " + report.getErrorCount() + " error(s), " + report.getWarningCount() + " warning(s)");
+            if (report.hasErrors() || (strict && report.getWarningCount() > 0)) failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Watches the campus data file and reloads it whenever it changes. The new
+ * file is parsed on the watcher's own thread while tours carry on with the
+ * old version; if it parses without errors it is appended as the next
+ * WorldVersion and tours move to it on their next command. A file with
+ * errors is reported and ignored, so a half-saved edit never breaks a tour.
+ */
+public class CampusWatcher implements AutoCloseable {
+    /** Wait after a change so an editor's burst of writes causes one reload. */
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path file;
+    private final WatchService watcher;
+    private final Thread thread;
+    private final Consumer<String> log;
+    private volatile WorldVersion current;
+
+    /**
+     * Starts watching.
+     * @param file campus data file
+     * @param initial version loaded from it
+     * @param log told what happened on each reload
+     * @throws IOException if the file's directory cannot be watched
+     */
+    public CampusWatcher(Path file, WorldVersion initial, Consumer<String> log) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.current = initial;
+        this.log = log;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        this.thread = new Thread(this::watch, "campus-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** The newest version loaded. */
+    public WorldVersion current() { return current; }
+
+    /**
+     * Parses the file now and, if it loads cleanly, appends it as the next version.
+     * @return the newest version (unchanged if the file has errors)
+     */
+    public synchronized WorldVersion reload() {
+        LoadReport report = new LoadReport();
+        Campus campus;
+        try {
+            campus = Campus.fromFile(file.toFile(), report);
+        } catch (IOException | IllegalArgumentException e) {
+            log.accept("Campus reload failed: " + e.getMessage());
+            return current;
+        }
+        if (report.hasErrors()) {
+            log.accept("Campus reload skipped: " + file.getFileName() + " has " + report.getErrorCount()
+                    + " error(s), first: " + report.sortedProblems().get(0));
+            return current;
+        }
+        WorldVersion next = current.successor(campus);
+        current = next;
+        log.accept("Campus reloaded (version " + next.getNumber() + "). " + next.getDiff().summary());
+        return next;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean ours = false;
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    if (file.getFileName().equals(e.context())) ours = true;
+                }
+                key.reset();
+                if (!ours) continue;
+                Thread.sleep(SETTLE_MILLIS);
+                // swallow the rest of the burst
+                WatchKey more;
+                while ((more = watcher.poll()) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    /** Stops watching. */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+}
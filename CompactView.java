@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The compact output mode of one tour, for remote and low-bandwidth
+ * clients. A location is described in full only the first time the tour is
+ * shown it; after that arriving there shows its name and only what changed
+ * since this tour last saw it:
+ * <pre>
+ * Bell Tower
+ * Items: +Cookie x2, -Scone
+ * People here: -Casey
+ * </pre>
+ * Long tours spend most turns walking between places already seen, so most
+ * arrivals shrink to a line. What the tour last saw is kept per location it
+ * has been shown; "look" describes the current location in full again.
+ * It is saved with the tour (see SessionSnapshot), so a tour read back from
+ * disk or moved to a reloaded campus goes on describing only changes.
+ *
+ * Like the rest of a tour, used by one thread at a time.
+ */
+public class CompactView {
+
+    /** What the tour was shown of one location. */
+    private static final class Seen {
+        /** Item name -> copies, in the order shown. */
+        final Map<String, Integer> items;
+        final List<String> people;
+        final List<String> doors;
+
+        Seen(Map<String, Integer> items, List<String> people, List<String> doors) {
+            this.items = items;
+            this.people = people;
+            this.doors = doors;
+        }
+    }
+
+    private final Map<Location, Seen> seen = new HashMap<>();
+
+    /**
+     * Describes a location the player has arrived at, in full the first time
+     * and as changes since the last time after that.
+     * @param status the player's tour
+     * @param loc location
+     * @return description
+     */
+    public String describe(TourStatus status, Location loc) {
+        Seen now = look(status, loc);
+        Seen before = seen.put(loc, now);
+        if (before == null) return TourSession.describeInFull(status, loc);
+        StringBuilder out = new StringBuilder(loc.getName());
+        itemChanges(out, before.items, now.items);
+        listChanges(out, "People here", before.people, now.people);
+        listChanges(out, "Doors", before.doors, now.doors);
+        return out.toString();
+    }
+
+    /**
+     * Describes a location in full whatever the tour has seen, and remembers it as seen.
+     * @param status the player's tour
+     * @param loc location
+     * @return full description
+     */
+    public String describeFully(TourStatus status, Location loc) {
+        seen.put(loc, look(status, loc));
+        return TourSession.describeInFull(status, loc);
+    }
+
+    /** Number of locations this tour has been shown. */
+    public int seenCount() { return seen.size(); }
+
+    /** The locations this tour has been shown (read-only). */
+    public Set<Location> getSeenLocations() { return Collections.unmodifiableSet(seen.keySet()); }
+
+    /**
+     * What the tour was last shown of a location's items.
+     * @param loc a location from getSeenLocations
+     * @return item name -> copies, in the order shown
+     */
+    public Map<String, Integer> seenItems(Location loc) { return Collections.unmodifiableMap(seen.get(loc).items); }
+
+    /**
+     * Who the tour last saw at a location.
+     * @param loc a location from getSeenLocations
+     * @return people's names
+     */
+    public List<String> seenPeople(Location loc) { return Collections.unmodifiableList(seen.get(loc).people); }
+
+    /**
+     * The doors the tour was last shown at a location, e.g. "N -> Bell Tower (locked)".
+     * @param loc a location from getSeenLocations
+     * @return doors as shown
+     */
+    public List<String> seenDoors(Location loc) { return Collections.unmodifiableList(seen.get(loc).doors); }
+
+    /**
+     * Remembers what the tour was shown of a location, as when it was saved.
+     * @param loc location
+     * @param items item name -> copies, in the order shown
+     * @param people people's names
+     * @param doors doors as shown
+     */
+    public void restoreSeen(Location loc, Map<String, Integer> items, List<String> people, List<String> doors) {
+        seen.put(loc, new Seen(new LinkedHashMap<>(items), new ArrayList<>(people), new ArrayList<>(doors)));
+    }
+
+    /** What a full description of the location would show now. */
+    private static Seen look(TourStatus status, Location loc) {
+        Map<String, Integer> items = new LinkedHashMap<>();
+        for (ItemBag.Stack s : status.getWorld().itemStacks(loc)) items.put(s.getDefinition().getName(), s.getCount());
+        List<String> people = new ArrayList<>();
+        for (Person p : loc.getPeople()) people.add(p.getName());
+        for (Person p : status.getCampus().getPeopleAtLocation(loc.getName())) {
+            if (!people.contains(p.getName())) people.add(p.getName());
+        }
+        List<String> doors = new ArrayList<>();
+        for (Door d : loc.getDoors()) {
+            doors.add(Character.toUpperCase(d.getDirection()) + " -> " + d.getToName()
+                    + (status.getWorld().isDoorLocked(d) ? " (locked)" : ""));
+        }
+        return new Seen(items, people, doors);
+    }
+
+    /** Appends "Items: +Cookie x2, -Scone" if any count changed. */
+    private static void itemChanges(StringBuilder out, Map<String, Integer> before, Map<String, Integer> now) {
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Integer> e : now.entrySet()) {
+            int was = before.getOrDefault(e.getKey(), 0);
+            if (e.getValue() > was) change(line, '+', e.getKey(), e.getValue() - was);
+            else if (e.getValue() < was) change(line, '-', e.getKey(), was - e.getValue());
+        }
+        for (Map.Entry<String, Integer> e : before.entrySet()) {
+            if (!now.containsKey(e.getKey())) change(line, '-', e.getKey(), e.getValue());
+        }
+        if (line.length() > 0) out.append(System.lineSeparator()).append("Items: ").append(line);
+    }
+
+    private static void change(StringBuilder line, char sign, String name, int count) {
+        if (line.length() > 0) line.append(", ");
+        line.append(sign).append(count == 1 ? name : name + " x" + count);
+    }
+
+    /** Appends "label: +a, -b" if the list gained or lost entries. */
+    private static void listChanges(StringBuilder out, String label, List<String> before, List<String> now) {
+        StringBuilder line = new StringBuilder();
+        for (String s : now) {
+            if (!before.contains(s)) line.append(line.length() > 0 ? ", " : "").append('+').append(s);
+        }
+        for (String s : before) {
+            if (!now.contains(s)) line.append(line.length() > 0 ? ", " : "").append('-').append(s);
+        }
+        if (line.length() > 0) out.append(System.lineSeparator()).append(label).append(": ").append(line);
+    }
+}
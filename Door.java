@@ -1,3 +1,5 @@
+import java.util.function.Function;
+
 /**
  * A directed connection between two Locations by a cardinal direction.
  */
@@ -6,11 +8,16 @@ public class Door {
     private final char direction;
     /** Origin location. */
     private final Location from;
-    /** Destination location. */
+    /** Destination location, or null when it is looked up by name on each use. */
     private final Location to;
+    /** Destination name and how to find it, for a door whose destination is paged in on demand. */
+    private final String toName;
+    private final Function<String, Location> resolver;
     /** Locking Doors */
     private boolean isLocked;
     private String keyItemName;
+    /** Set once the campus is frozen; tours unlock doors in their own world state instead. */
+    private volatile boolean frozen;
 
     /**
      * Constructs a Door.
@@ -22,15 +29,36 @@ public class Door {
         this.direction = Character.toLowerCase(direction);
         this.from = from;
         this.to = to;
+        this.toName = null;
+        this.resolver = null;
     }
 
     public Door(char direction, Location from, Location to, String keyItemName) {
         this.direction = Character.toLowerCase(direction);
         this.from = from;
         this.to = to;
+        this.toName = null;
+        this.resolver = null;
         this.isLocked = true;
         this.keyItemName = keyItemName;
     }
+
+    /**
+     * Constructs a Door whose destination is found by name each time it is
+     * used, so it can lead into a part of the campus that is not loaded (see
+     * CampusPager). The door does not hold its destination.
+     * @param direction one of 'n','s','e','w' (case-insensitive)
+     * @param from origin location
+     * @param toName destination name
+     * @param resolver finds the destination by name, loading it if needed
+     */
+    public Door(char direction, Location from, String toName, Function<String, Location> resolver) {
+        this.direction = Character.toLowerCase(direction);
+        this.from = from;
+        this.to = null;
+        this.toName = toName;
+        this.resolver = resolver;
+    }
     /**
      * Gets the door direction.
      * @return direction char
@@ -47,7 +75,16 @@ public class Door {
      * Gets the destination location.
      * @return to location
      */
-    public Location getTo() { return to; }
+    public Location getTo() { return (resolver == null) ? to : resolver.apply(toName); }
+
+    /**
+     * Gets the destination's name without loading the destination.
+     * @return to location name, or null if the door leads nowhere
+     */
+    public String getToName() {
+        if (resolver != null) return toName;
+        return (to == null) ? null : to.getName();
+    }
 
     /**
      * Gets status of locked door
@@ -58,7 +95,15 @@ public class Door {
      * Sets locked door statys
      * @param locked true to lock door, false to unlock.
      */
-    public void setIsLocked(boolean locked) { this.isLocked = locked; }
+    public void setIsLocked(boolean locked) {
+        if (frozen) throw new IllegalStateException("Door belongs to a frozen campus template");
+        this.isLocked = locked;
+    }
+
+    /**
+     * Freezes this door as part of a shared campus template.
+     */
+    public void freeze() { this.frozen = true; }
     /**
      * gets name of the key item required to unlock this door
      * @return key name or null
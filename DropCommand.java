@@ -1,8 +1,8 @@
 /**
- * Command for "drop <itemName>".
+ * Command for "drop [count|all] <itemName>" and "drop all".
  */
 public class DropCommand implements UserInputCommand {
-    /** Item name to drop. */
+    /** Item name to drop, optionally preceded by a count or "all". */
     private final String itemName;
 
     /**
@@ -19,10 +19,26 @@ public class DropCommand implements UserInputCommand {
     public String carryOut() {
         if (itemName == null || itemName.isBlank())
             return "Please specify which item to drop (e.g., \"drop hat\").";
-        Item itemToDrop = TourStatus.getInstance().getItemFromBackpack(itemName);
-        if (itemToDrop == null) return "You don't have \"" + itemName + "\" in your backpack.";
-        Item dropped = TourStatus.getInstance().dropItemFromBackpack(itemToDrop);
-        return "The " + dropped.getName() + " has been dropped in " +
-                TourStatus.getInstance().getCurrentLocation().getName() + ".";
+        TourStatus ts = TourStatus.getInstance();
+        QuantityArg arg = QuantityArg.parse(itemName);
+        if (arg.getCount() < 1) return "Please drop at least one.";
+        Location here = ts.getCurrentLocation();
+        if (here == null) return "You're nowhere.";
+        if (arg.getName() == null) {
+            java.util.List<String> dropped = ts.dropAllFromBackpack();
+            if (dropped.isEmpty()) return "Your backpack is already empty.";
+            return "You dropped " + String.join(", ", dropped) + " in " + here.getName() + ".";
+        }
+
+        String name = arg.getName();
+        if (ts.getBackpackCount(name) == 0) {
+            NameIndex.Match<ItemDefinition> m = ts.resolveBackpackItem(name);
+            if (!m.isUnique()) return "You don't have \"" + name + "\" in your backpack." + m.didYouMean();
+            name = m.get().getName();
+        }
+        Item itemToDrop = ts.getItemFromBackpack(name);
+        int dropped = ts.dropItemsFromBackpack(name, arg.getCount());
+        return "The " + ItemBag.format(itemToDrop.getDefinition(), dropped) + " has been dropped in " +
+                here.getName() + ".";
     }
 }
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A player's queue of events published to them, bounded so a player who
+ * is not reading (a slow or idle client) can never hold up the players
+ * publishing. When the queue is full the oldest event is dropped to make
+ * room: the newest news is the most useful.
+ */
+public class EventInbox {
+    /** Events kept per player by default. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final ArrayBlockingQueue<PlayerEvent> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Creates an inbox of the default capacity. */
+    public EventInbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an inbox.
+     * @param capacity events kept before the oldest are dropped
+     */
+    public EventInbox(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Inbox capacity must be at least 1");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Adds an event without ever blocking, dropping the oldest one if full.
+     * @param event event
+     */
+    public void offer(PlayerEvent event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes and returns every waiting event, oldest first.
+     * @return events (empty if none)
+     */
+    public List<PlayerEvent> drain() {
+        List<PlayerEvent> out = new ArrayList<>(queue.size());
+        queue.drainTo(out);
+        return out;
+    }
+
+    /** Number of events waiting. */
+    public int size() { return queue.size(); }
+
+    /** Number of events dropped because the inbox was full. */
+    public long getDroppedCount() { return dropped.get(); }
+}
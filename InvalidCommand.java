@@ -21,7 +21,7 @@ public class InvalidCommand implements UserInputCommand {
  
     public String carryOut() {
         return "Invalid command: \"" + invalidCommand +
-                "\". Valid: n/s/e/w, pickup <item>, drop <item>, backpack, meet <person>, save, load, q to quit."
+                "\". Valid: n/s/e/w, pickup [n|all] <item>, drop [n|all] <item>, backpack, meet <person>, shelter, save, load, q to quit."
         ;
               
     }
@@ -1,104 +1,84 @@
 /**
  * Represents an item that can be picked up by the user.
- * Each item has a name and a one-line pickup message.
+ * An Item is a thin instance: the name, pickup message and other text live
+ * in a shared ItemDefinition, so placing or carrying many copies of the same
+ * item only costs one reference each.
  */
 public class Item {
-    /** Item name (used for display and case-insensitive lookups). */
-    private String name;
-    /** One-line message displayed when the item is picked up. */
-    private String message;
-    /** Optional transform target name (when this item transforms into another). */
-    private String transformTarget;
-    /** Message shown when Disappear is carried out */
-    private String actionTwo;
+    /** Shared definition of this kind of item. */
+    private final ItemDefinition definition;
 
-    /** Zero-argument constructor. */
-    public Item() { }
+    /**
+     * Constructs an instance of a defined item.
+     * @param definition shared item definition
+     */
+    public Item(ItemDefinition definition) {
+        this.definition = definition;
+    }
 
     /**
-     * Constructs an Item.
+     * Constructs an item with its own one-off definition.
      * @param name item name (non-empty)
      * @param msg pickup message (single line)
      */
     public Item(String name, String msg) {
-        this.name = name;
-        this.message = msg;
+        this(new ItemDefinition(name, msg));
     }
 
     /**
-     * Gets the item name.
-     * @return name
+     * Gets the shared definition.
+     * @return definition
      */
-    public String getName() { return name; }
+    public ItemDefinition getDefinition() { return definition; }
 
     /**
-     * Sets the item name.
-     * @param n new name
+     * Gets the item name.
+     * @return name
      */
-    public void setName(String n) { this.name = n; }
+    public String getName() { return definition.getName(); }
 
     /**
      * Gets the pickup message.
      * @return message
      */
-    public String getMessage() { return message; }
-
-    /**
-     * Sets the pickup message.
-     * @param msg new message
-     */
-    public void setMessage(String msg) { this.message = msg; }
+    public String getMessage() { return definition.getMessage(); }
 
     /**
      * Gets the action two message (for Disappear).
      * @return actionTwo message
      */
-    public String getActionTwo() { return actionTwo; }
-
-    /**
-     * Sets the action two message.
-     * @param actionTwoMsg new message
-     */
-    public void setActionTwo(String actionTwoMsg) { this.actionTwo = actionTwoMsg; }
+    public String getActionTwo() { return definition.getActionTwo(); }
 
     /**
      * Gets the transform target name (the item this one becomes when used).
      * @return transform target name or null
      */
-    public String getTransformTarget() { return transformTarget; }
-
-    /**
-     * Sets the transform target name.
-     * @param t target item name
-     */
-    public void setTransformTarget(String t) { this.transformTarget = t; }
+    public String getTransformTarget() { return definition.getTransformTarget(); }
 
     /**
      * Returns the item name for display.
      * @return item name
      */
-    @Override public String toString() { return name; }
+    @Override public String toString() { return getName(); }
 
     /**
-     * Case-insensitive equality by item name.
+     * Two items are equal when they are instances of the same definition.
      * @param o other object
-     * @return true if both Items have the same name ignoring case
+     * @return true if both Items share a definition
      */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Item)) return false;
-        Item that = (Item) o;
-        if (this.name == null || that.name == null) return false;
-        return this.name.equalsIgnoreCase(that.name);
+        return definition == ((Item) o).definition;
     }
 
     /**
-     * Hash code that matches equals (case-insensitive by name).
+     * Hash code that matches equals (the definition id).
      * @return hash
      */
     @Override
     public int hashCode() {
-        return (name == null) ? 0 : name.toLowerCase().hashCode();
+        return definition.getId();
     }
 }
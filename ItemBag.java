@@ -0,0 +1,195 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A multiset of items: one stack (definition + count) per kind of item, kept
+ * in the order each kind first arrived. Adding or removing any number of
+ * copies is one hash lookup, and memory grows with the number of distinct
+ * items rather than the number of copies. Names are matched case-insensitively.
+ *
+ * The stacks are held in a PersistentMap, so copy() is O(1) and the copy
+ * shares everything with the original until either changes; this is how a
+ * tour keeps its backpack as it was before each turn (see TourStatus.checkpoint).
+ */
+public class ItemBag {
+    /** Count meaning "as many as there are". */
+    public static final int ALL = Integer.MAX_VALUE;
+
+    /** One kind of item and how many copies of it are in the bag. */
+    public static final class Stack {
+        private final ItemDefinition definition;
+        private final int count;
+        /** When the kind arrived, for listing in arrival order. */
+        private final long arrival;
+
+        Stack(ItemDefinition definition, int count, long arrival) {
+            this.definition = definition;
+            this.count = count;
+            this.arrival = arrival;
+        }
+
+        public ItemDefinition getDefinition() { return definition; }
+        public int getCount() { return count; }
+
+        @Override public String toString() { return format(definition, count); }
+    }
+
+    private static final Comparator<Stack> ARRIVAL_ORDER = Comparator.comparingLong(s -> s.arrival);
+
+    /** Lowercase item name -> stack. */
+    private PersistentMap<String, Stack> stacks = PersistentMap.empty();
+    private int total;
+    private long arrivals;
+    /** stacks() as last built, until the bag changes; volatile as frozen template bags are read by many tours. */
+    private volatile List<Stack> ordered;
+
+    /**
+     * Adds copies of an item.
+     * @param def item definition
+     * @param n number of copies (ignored if less than 1)
+     */
+    public void add(ItemDefinition def, int n) {
+        if (def == null || n < 1) return;
+        Stack s = stacks.get(def.getKey());
+        ordered = null;
+        stacks = stacks.plus(def.getKey(), (s == null) ? new Stack(def, n, arrivals++) : new Stack(s.definition, s.count + n, s.arrival));
+        total += n;
+    }
+
+    /**
+     * Removes up to n copies of the named item.
+     * @param name item name (case-insensitive)
+     * @param n copies wanted (ALL for every copy)
+     * @return number of copies actually removed
+     */
+    public int remove(String name, int n) {
+        if (name == null || n < 1) return 0;
+        String key = name.trim().toLowerCase();
+        Stack s = stacks.get(key);
+        if (s == null) return 0;
+        int taken = Math.min(n, s.count);
+        total -= taken;
+        ordered = null;
+        stacks = (taken == s.count) ? stacks.minus(key) : stacks.plus(key, new Stack(s.definition, s.count - taken, s.arrival));
+        return taken;
+    }
+
+    /**
+     * Removes up to n copies of an item.
+     * @param def item definition
+     * @param n copies wanted (ALL for every copy)
+     * @return number of copies actually removed
+     */
+    public int remove(ItemDefinition def, int n) {
+        return (def == null) ? 0 : remove(def.getName(), n);
+    }
+
+    /**
+     * Number of copies of the named item.
+     * @param name item name (case-insensitive)
+     * @return count, 0 if none
+     */
+    public int count(String name) {
+        if (name == null) return 0;
+        Stack s = stacks.get(name.trim().toLowerCase());
+        return (s == null) ? 0 : s.count;
+    }
+
+    /**
+     * Finds the definition of the named item if at least one copy is here.
+     * @param name item name (case-insensitive)
+     * @return definition, or null
+     */
+    public ItemDefinition find(String name) {
+        if (name == null) return null;
+        Stack s = stacks.get(name.trim().toLowerCase());
+        return (s == null) ? null : s.definition;
+    }
+
+    /** True when the bag holds no items. */
+    public boolean isEmpty() { return total == 0; }
+
+    /** Total number of copies of all items. */
+    public int size() { return total; }
+
+    /** Number of different kinds of item. */
+    public int distinctCount() { return stacks.size(); }
+
+    /** The stacks, in arrival order (read-only). */
+    public Collection<Stack> stacks() {
+        if (ordered == null) {
+            List<Stack> out = stacks.values();
+            out.sort(ARRIVAL_ORDER);
+            ordered = Collections.unmodifiableList(out);
+        }
+        return ordered;
+    }
+
+    /** Removes everything. */
+    public void clear() {
+        stacks = PersistentMap.empty();
+        total = 0;
+        ordered = null;
+    }
+
+    /**
+     * A copy of this bag, made in O(1); the two share their stacks until either changes.
+     * @return the copy
+     */
+    public ItemBag copy() {
+        ItemBag b = new ItemBag();
+        b.replaceWith(this);
+        return b;
+    }
+
+    /**
+     * Makes this bag hold exactly what another holds, in O(1).
+     * @param other bag to take the contents of (not changed)
+     */
+    public void replaceWith(ItemBag other) {
+        stacks = other.stacks;
+        total = other.total;
+        arrivals = other.arrivals;
+        ordered = other.ordered;
+    }
+
+    /**
+     * Formats the contents as "label: a, b x3, c", or "label: emptyText" when empty.
+     * @param label leading label such as "Items"
+     * @param emptyText text shown for an empty bag such as "(none)"
+     * @return formatted line
+     */
+    public String describe(String label, String emptyText) {
+        return describe(stacks(), label, emptyText);
+    }
+
+    /**
+     * Formats stacks as "label: a, b x3, c", or "label: emptyText" when there are none.
+     * @param stacks stacks to list
+     * @param label leading label such as "Items"
+     * @param emptyText text shown when empty such as "(none)"
+     * @return formatted line
+     */
+    public static String describe(Iterable<Stack> stacks, String label, String emptyText) {
+        StringBuilder sb = new StringBuilder(label).append(": ");
+        boolean first = true;
+        for (Stack s : stacks) {
+            if (!first) sb.append(", ");
+            sb.append(format(s.definition, s.count));
+            first = false;
+        }
+        return first ? label + ": " + emptyText : sb.toString();
+    }
+
+    /**
+     * Formats a stack as "Cookie" or "Cookie x40".
+     * @param def item definition
+     * @param count number of copies
+     * @return display text
+     */
+    public static String format(ItemDefinition def, int count) {
+        return (count == 1) ? def.getName() : def.getName() + " x" + count;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The shared, immutable description of a kind of item: its name, pickup
+ * message, transform target and disappear message. Every Item placed on
+ * campus or carried in a backpack points at one of these instead of holding
+ * its own copies of the strings.
+ */
+public final class ItemDefinition {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /** Unique id, used for equality and hashing of items. */
+    private final int id;
+    /** Item name (used for display and case-insensitive lookups). */
+    private final String name;
+    /** Lowercase name, computed once for lookups. */
+    private final String key;
+    /** Handle of the message displayed when the item is picked up (text kept in the TextStore). */
+    private final long messageRef;
+    /** Optional transform target name (when this item transforms into another). */
+    private final String transformTarget;
+    /** Handle of the message shown when Disappear is carried out. */
+    private final long actionTwoRef;
+
+    /**
+     * Constructs a definition without a transform target or disappear message.
+     * @param name item name (non-empty)
+     * @param message pickup message (single line)
+     */
+    public ItemDefinition(String name, String message) {
+        this(name, message, null, null);
+    }
+
+    /**
+     * Constructs a definition.
+     * @param name item name (non-empty)
+     * @param message pickup message (single line)
+     * @param transformTarget name of the item this one becomes when used, or null
+     * @param actionTwo message shown when the item is made to disappear, or null
+     */
+    public ItemDefinition(String name, String message, String transformTarget, String actionTwo) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.name = name;
+        this.key = (name == null) ? "" : name.trim().toLowerCase();
+        this.messageRef = TextStore.getDefault().put(this, message);
+        this.transformTarget = transformTarget;
+        this.actionTwoRef = TextStore.getDefault().put(this, actionTwo);
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    /** Lowercase, trimmed name. */
+    public String getKey() { return key; }
+    public String getMessage() { return TextStore.getDefault().get(this, messageRef); }
+    public String getTransformTarget() { return transformTarget; }
+    public String getActionTwo() { return TextStore.getDefault().get(this, actionTwoRef); }
+
+    @Override public String toString() { return name; }
+}
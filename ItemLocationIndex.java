@@ -0,0 +1,66 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Campus-wide index from item name to the locations that hold copies of it,
+ * with the count in each. Locations report every change to their items, so
+ * the index is always current and "where is X?" costs only the size of the
+ * answer instead of a scan over every location.
+ */
+public class ItemLocationIndex {
+    /** Lowercase item name -> (location -> copies there), in the order locations first got the item. */
+    private final Map<String, LinkedHashMap<Location, Integer>> byItem = new HashMap<>();
+
+    /**
+     * Records a change in the number of copies of an item at a location.
+     * @param loc location whose items changed
+     * @param itemName item name (case-insensitive)
+     * @param delta copies added (positive) or removed (negative)
+     */
+    public void changed(Location loc, String itemName, int delta) {
+        if (loc == null || itemName == null || delta == 0) return;
+        String key = itemName.trim().toLowerCase();
+        LinkedHashMap<Location, Integer> where = byItem.get(key);
+        if (where == null) {
+            if (delta < 0) return;
+            where = new LinkedHashMap<>();
+            byItem.put(key, where);
+        }
+        int n = where.getOrDefault(loc, 0) + delta;
+        if (n > 0) {
+            where.put(loc, n);
+        } else {
+            where.remove(loc);
+            if (where.isEmpty()) byItem.remove(key);
+        }
+    }
+
+    /**
+     * Adds every item currently in a location (used when a location joins the campus).
+     * @param loc location
+     */
+    public void addLocation(Location loc) {
+        for (ItemBag.Stack s : loc.getItemStacks()) changed(loc, s.getDefinition().getName(), s.getCount());
+    }
+
+    /**
+     * Removes every item in a location from the index (used when a location is replaced).
+     * @param loc location
+     */
+    public void removeLocation(Location loc) {
+        for (ItemBag.Stack s : loc.getItemStacks()) changed(loc, s.getDefinition().getName(), -s.getCount());
+    }
+
+    /**
+     * Locations holding the named item, with counts.
+     * @param itemName item name (case-insensitive)
+     * @return read-only map (empty if the item is nowhere on campus)
+     */
+    public Map<Location, Integer> locationsOf(String itemName) {
+        if (itemName == null) return Collections.emptyMap();
+        LinkedHashMap<Location, Integer> where = byItem.get(itemName.trim().toLowerCase());
+        return (where == null) ? Collections.emptyMap() : Collections.unmodifiableMap(where);
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON straight to a Writer as it goes, so a response is never built
+ * up as one big string first. Commas and nesting are tracked for the caller:
+ * <pre>
+ * json.beginObject().name("location").value("Bell Tower")
+ *     .name("items").beginArray().value("Cookie").endArray()
+ *     .endObject();
+ * </pre>
+ * Not thread-safe; one writer per response.
+ */
+public class JsonWriter {
+    /** Deepest nesting allowed; far more than any response here needs. */
+    private static final int MAX_DEPTH = 32;
+
+    private final Writer out;
+    /** Per open object or array: whether anything has been written in it yet. */
+    private final boolean[] hasElement = new boolean[MAX_DEPTH];
+    private int depth;
+    /** True right after name(), when the value needs no comma. */
+    private boolean afterName;
+
+    /**
+     * Creates a writer.
+     * @param out destination; not closed by this writer
+     */
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     * @param name member name
+     * @return this writer
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string, or null.
+     * @param value value
+     * @return this writer
+     */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) out.write("null");
+        else string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /** Sends what has been written so far on to the destination. */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private JsonWriter open(char c) throws IOException {
+        if (depth == MAX_DEPTH) throw new IllegalStateException("JSON nested too deeply");
+        separate();
+        out.write(c);
+        hasElement[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter close(char c) throws IOException {
+        if (depth == 0) throw new IllegalStateException("Nothing to close");
+        depth--;
+        out.write(c);
+        return this;
+    }
+
+    /** Writes the comma before a value or name, unless it follows a name or opens a container. */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElement[depth - 1]) out.write(',');
+            hasElement[depth - 1] = true;
+        }
+    }
+
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = escape(c);
+            if (escape == null) continue;
+            // unescaped runs go out in one write
+            out.write(s, start, i - start);
+            out.write(escape);
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '"': return "\\\"";
+            case '\\': return "\\\\";
+            case '\n': return "\\n";
+            case '\r': return "\\r";
+            case '\t': return "\\t";
+            default: return (c < 0x20 || c == 0x2028 || c == 0x2029) ? String.format("\\u%04x", (int) c) : null;
+        }
+    }
+}
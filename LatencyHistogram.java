@@ -0,0 +1,94 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations, safe to record into from many threads at
+ * once without locking. Values are counted in log-linear buckets (eight per
+ * power of two), so any percentile is known to within about 12% while the
+ * whole histogram stays a fixed 4 KB. Recording is a few atomic adds.
+ */
+public final class LatencyHistogram {
+    /** Sub-buckets per power of two, as a number of bits. */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     * @param nanos duration in nanoseconds (negative values count as 0)
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        buckets.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    private static int indexOf(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** Largest value that falls in a bucket. */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        long width = 1L << (exp - SUB_BITS);
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << (exp - SUB_BITS);
+        return lower + width - 1;
+    }
+
+    /** Number of values recorded. */
+    public long getCount() { return count.sum(); }
+
+    /** Sum of all values recorded, in nanoseconds. */
+    public long getTotalNanos() { return sum.sum(); }
+
+    /** Largest value recorded, in nanoseconds. */
+    public long getMaxNanos() { return max.get(); }
+
+    /** Mean value in nanoseconds (0 if nothing recorded). */
+    public double getMeanNanos() {
+        long n = getCount();
+        return (n == 0) ? 0 : (double) getTotalNanos() / n;
+    }
+
+    /**
+     * Estimates a percentile.
+     * @param p percentile between 0 and 100
+     * @return value in nanoseconds that p percent of values are at or below (0 if nothing recorded)
+     */
+    public long percentile(double p) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    /** Forgets everything recorded. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
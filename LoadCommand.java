@@ -1,8 +1,9 @@
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Command to load a saved tour state from a file.
@@ -10,6 +11,9 @@ import java.util.Scanner;
  */
 public class LoadCommand implements UserInputCommand {
 
+    /** Backpack line with a count: "Cookie x5". */
+    private static final Pattern STACK_LINE = Pattern.compile("^(.*\\S)\\s+x(\\d+)$");
+
     private final String filename;
     private int distance;
 
@@ -45,8 +49,13 @@ public class LoadCommand implements UserInputCommand {
 
         String locationName = null;
         int distance = 0;
+        TourRandom random = null;
         List<String> backpackNames = new ArrayList<>();
 
+        long start = System.nanoTime();
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        boolean read = false;
         try (Scanner s = new Scanner(inFile)) {
             while (s.hasNextLine()) {
                 String line = s.nextLine().trim();
@@ -65,6 +74,13 @@ public class LoadCommand implements UserInputCommand {
                     } catch (NumberFormatException e) {
                         distance = 0;
                     }
+                } else if (line.startsWith("SEED:")) {
+                    String[] parts = line.substring("SEED:".length()).trim().split("\\s+");
+                    try {
+                        random = TourRandom.restore(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                    } catch (RuntimeException e) {
+                        random = null; // keep the current random source
+                    }
                 } else if (line.equals("BACKPACK:")) {
                     // read lines until END_BACKPACK
                     while (s.hasNextLine()) {
@@ -76,8 +92,12 @@ public class LoadCommand implements UserInputCommand {
                     }
                 }
             }
+            read = true;
         } catch (Exception e) {
             return "Error loading game: " + e.getMessage();
+        } finally {
+            Metrics.lap("load.read", start);
+            event.finish("load", filename, read);
         }
 
         if (locationName == null) {
@@ -94,25 +114,30 @@ public class LoadCommand implements UserInputCommand {
 
         // Distance – adjust setter name if yours is different.
         status.setDistance(distance);
+        if (random != null) status.setRandom(random);
 
-        // Restore backpack contents:
+        // Restore backpack contents (lines are "Name" or "Name xN"):
         status.clearBackpack();
-        for (String itemName : backpackNames) {
-            Item it = null;
-            // Search all locations for the item
-            for (String locName : ((Collection<String>) campus.getLocations()).toArray(new String[0])) {
-                Location location = campus.getLocation(locName);
-                it = location.getItemNamed(itemName);
-                if (it != null) {
-                    location.removeItem(it);
-                    break;
-                }
+        for (String line : backpackNames) {
+            String itemName = line;
+            int count = 1;
+            Matcher m = STACK_LINE.matcher(line);
+            if (m.matches()) {
+                itemName = m.group(1).trim();
+                count = Integer.parseInt(m.group(2));
+            }
+            ItemDefinition def = campus.getItemDefinition(itemName);
+            if (def == null) {
+                // Unknown item: give the user a basic one so they still have it.
+                def = new ItemDefinition(itemName, "An item from your previous tour.");
             }
-            if (it == null) {
-                // If not found, create a basic item so the user still has it.
-                it = new Item(itemName, "An item from your previous tour.");
+            // Take the copies back out of the campus where they were dropped or left
+            int needed = count;
+            for (Location location : new ArrayList<>(status.getWorld().itemLocations(itemName).keySet())) {
+                if (needed == 0) break;
+                needed -= status.getWorld().removeItems(location, itemName, needed);
             }
-            status.addToBackpack(it);
+            status.addToBackpack(def, count);
         }
 
         return "Game loaded. You are now at " + loc.getName() + ".";
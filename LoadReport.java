@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the problems found while loading a campus file, together with the
+ * line numbers where locations, items and people were defined, so that later
+ * checks (see CampusValidator) can point back into the file.
+ */
+public class LoadReport {
+
+    /** One reported problem. */
+    public static class Problem {
+        private final int line;
+        private final boolean error;
+        private final String message;
+
+        public Problem(int line, boolean error, String message) {
+            this.line = line;
+            this.error = error;
+            this.message = message;
+        }
+
+        /** 1-based line number in the campus file (0 if not tied to a line). */
+        public int getLine() { return line; }
+        /** True for errors, false for warnings. */
+        public boolean isError() { return error; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + (error ? "error: " : "warning: ") + message;
+        }
+    }
+
+    /** A named thing (item or person) placed in a location, with its line number. */
+    public static class Placement {
+        private final String name;
+        private final Location location;
+        private final int line;
+
+        public Placement(String name, Location location, int line) {
+            this.name = name;
+            this.location = location;
+            this.line = line;
+        }
+
+        public String getName() { return name; }
+        public Location getLocation() { return location; }
+        public int getLine() { return line; }
+    }
+
+    private final List<Problem> problems = new ArrayList<>();
+    private final List<Placement> items = new ArrayList<>();
+    private final List<Placement> people = new ArrayList<>();
+    /** Definition line by location id. */
+    private int[] locationLines = new int[16];
+    private int errorCount;
+
+    /** Records an error at a line. */
+    public void error(int line, String message) {
+        problems.add(new Problem(line, true, message));
+        errorCount++;
+    }
+
+    /** Records a warning at a line. */
+    public void warning(int line, String message) {
+        problems.add(new Problem(line, false, message));
+    }
+
+    /** Remembers where a location was defined (call after the campus assigned its id). */
+    public void locationDefined(Location loc, int line) {
+        int id = loc.getId();
+        if (id < 0) return;
+        if (id >= locationLines.length) locationLines = Arrays.copyOf(locationLines, Math.max(id + 1, locationLines.length * 2));
+        locationLines[id] = line;
+    }
+
+    /** Line where a location was defined, or 0 if unknown. */
+    public int locationLine(Location loc) {
+        int id = loc.getId();
+        return (id >= 0 && id < locationLines.length) ? locationLines[id] : 0;
+    }
+
+    /** Remembers that an item was placed in a location. */
+    public void itemPlaced(String itemName, Location where, int line) {
+        items.add(new Placement(itemName, where, line));
+    }
+
+    /** Remembers that a person was placed in a location. */
+    public void personPlaced(String personName, Location where, int line) {
+        people.add(new Placement(personName, where, line));
+    }
+
+    public List<Problem> getProblems() { return Collections.unmodifiableList(problems); }
+    public List<Placement> getItemPlacements() { return Collections.unmodifiableList(items); }
+    public List<Placement> getPersonPlacements() { return Collections.unmodifiableList(people); }
+
+    public int getErrorCount() { return errorCount; }
+    public int getWarningCount() { return problems.size() - errorCount; }
+    public boolean hasErrors() { return errorCount > 0; }
+
+    /** Problems sorted by line number (stable, so same-line problems keep their order). */
+    public List<Problem> sortedProblems() {
+        List<Problem> out = new ArrayList<>(problems);
+        out.sort((a, b) -> Integer.compare(a.getLine(), b.getLine()));
+        return out;
+    }
+}
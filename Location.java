@@ -15,13 +15,20 @@ import java.util.Collection;
 
 public class Location {
     private String name;
-    private String description;
+    // handle of the description text in the shared TextStore (kept off-heap)
+    private long descriptionRef = TextStore.EMPTY_REF;
     private boolean haveVisited;
     // true when this location is an indoor building (protects from weather)
     private boolean indoors;
+    // position of this location in its campus (assigned by Campus.addLocation), -1 if unassigned
+    private int id = -1;
 
     private final ArrayList<Door> doors = new ArrayList<>();
-    private final ArrayList<Item> items = new ArrayList<>();
+    private final ItemBag items = new ItemBag();
+    // campus-wide item index to keep up to date, or null when not on a campus
+    private ItemLocationIndex itemIndex;
+    // set once the campus is frozen as a shared template; tours then change an overlay instead
+    private volatile boolean frozen;
     private final ArrayList<Person> people = new ArrayList<>();
 
     public Location() { }
@@ -43,7 +50,7 @@ public class Location {
      */
     public Location(String name, String desc, boolean indoors) {
         this.name = name;
-        this.description = (desc == null) ? "" : desc;
+        this.descriptionRef = TextStore.getDefault().put(this, (desc == null) ? "" : desc);
         this.indoors = indoors;
     }
 
@@ -53,11 +60,26 @@ public class Location {
      */
     public String getName() { return name; }
 
+    /**
+     * Gets the campus-assigned index of this location.
+     * @return index into the campus location list, or -1 if not on a campus
+     */
+    public int getId() { return id; }
+
+    /**
+     * Sets the campus-assigned index of this location.
+     * @param id index into the campus location list
+     */
+    public void setId(int id) {
+        checkNotFrozen();
+        this.id = id;
+    }
+
     /**
      * Gets the description text.
      * @return description
      */
-    public String getDescription() { return description; }
+    public String getDescription() { return TextStore.getDefault().get(this, descriptionRef); }
 
     /**
      * Returns whether this location has been visited.
@@ -69,13 +91,33 @@ public class Location {
      * Sets the visited flag.
      * @param v new visited value
      */
-    public void setHaveVisited(boolean v) { this.haveVisited = v; }
+    public void setHaveVisited(boolean v) {
+        checkNotFrozen();
+        this.haveVisited = v;
+    }
+
+    /**
+     * Freezes this location as part of a shared campus template.
+     * Further changes to its items, doors or flags throw IllegalStateException.
+     */
+    public void freeze() { this.frozen = true; }
+
+    /**
+     * Returns whether this location is part of a frozen template.
+     * @return true if frozen
+     */
+    public boolean isFrozen() { return frozen; }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("Location \"" + name + "\" belongs to a frozen campus template");
+    }
 
     /**
      * Adds a door that leaves from this location.
      * @param door door to add
      */
     public void addDoor(Door door) {
+        checkNotFrozen();
         if (door != null) doors.add(door);
     }
 
@@ -98,7 +140,7 @@ public class Location {
             Door d = doors.get(i);
             if (i > 0) sb.append(", ");
             sb.append(Character.toUpperCase(d.getDirection()))
-                    .append(" -> ").append(d.getTo().getName());
+                    .append(" -> ").append(d.getToName());
         }
         return sb.toString();
     }
@@ -111,12 +153,24 @@ public class Location {
      * @return full description
      */
     public String describeLocation(String dir) {
+        return describeLocation(dir, null);
+    }
+
+    /**
+     * Builds a multi-line description as seen by one tour: items come from
+     * the tour's world state rather than the campus template.
+     * @param dir direction entered (ignored)
+     * @param world the tour's world state, or null to show the template's items
+     * @return full description
+     */
+    public String describeLocation(String dir, WorldState world) {
         StringBuilder sb = new StringBuilder();
         sb.append(getName()).append(System.lineSeparator());
+        String description = getDescription();
         if (description != null && !description.isBlank()) {
             sb.append(description.trim()).append(System.lineSeparator());
         }
-        sb.append(getItemsInLocation()).append(System.lineSeparator());
+        sb.append(world == null ? getItemsInLocation() : world.describeItems(this)).append(System.lineSeparator());
         sb.append(describePeople()).append(System.lineSeparator());
         sb.append(describeDoors());
         return sb.toString();
@@ -141,18 +195,42 @@ public class Location {
      * @param item item to add
      */
     public void addItem(Item item) {
-        if (item != null) items.add(item);
+        if (item != null) addItems(item.getDefinition(), 1);
+    }
+
+    /**
+     * Adds several copies of an item to this location.
+     * @param def item definition
+     * @param count number of copies
+     */
+    public void addItems(ItemDefinition def, int count) {
+        if (def == null || count < 1) return;
+        checkNotFrozen();
+        items.add(def, count);
+        if (itemIndex != null) itemIndex.changed(this, def.getName(), count);
     }
 
     /**
-     * Removes the first equal item instance from this location.
+     * Removes one copy of an item from this location.
      * @param item item to remove
      * @return the removed item, or null if not present
      */
     public Item removeItem(Item item) {
         if (item == null) return null;
-        return items.remove(item) ? item : null;
-        // note: equality uses Item.equals (case-insensitive by name)
+        return removeItems(item.getName(), 1) == 1 ? item : null;
+    }
+
+    /**
+     * Removes up to count copies of the named item from this location.
+     * @param name item name (case-insensitive)
+     * @param count copies wanted (ItemBag.ALL for every copy)
+     * @return number of copies removed
+     */
+    public int removeItems(String name, int count) {
+        checkNotFrozen();
+        int removed = items.remove(name, count);
+        if (removed > 0 && itemIndex != null) itemIndex.changed(this, name, -removed);
+        return removed;
     }
 
     /**
@@ -161,25 +239,51 @@ public class Location {
      * @return the matching item, or null if none
      */
     public Item getItemNamed(String name) {
-        if (name == null) return null;
-        for (Item it : items) {
-            if (name.equalsIgnoreCase(it.getName())) return it;
-        }
-        return null;
+        ItemDefinition def = items.find(name);
+        return (def == null) ? null : new Item(def);
+    }
+
+    /**
+     * Finds the definition of an item in this location (without removing).
+     * @param name item name (case-insensitive)
+     * @return the definition, or null if none
+     */
+    public ItemDefinition findItem(String name) {
+        return items.find(name);
+    }
+
+    /**
+     * Counts the copies of an item in this location.
+     * @param name item name (case-insensitive)
+     * @return number of copies, 0 if none
+     */
+    public int getItemCount(String name) {
+        return items.count(name);
+    }
+
+    /**
+     * Returns the item stacks in this location (read-only).
+     * @return stacks in arrival order
+     */
+    public Collection<ItemBag.Stack> getItemStacks() {
+        return items.stacks();
+    }
+
+    /**
+     * Sets the campus-wide item index this location reports its item changes to.
+     * @param index item index, or null
+     */
+    public void setItemIndex(ItemLocationIndex index) {
+        checkNotFrozen();
+        this.itemIndex = index;
     }
 
     /**
      * Returns a formatted items line for this location.
-     * @return "Items: (none)" or "Items: a, b, c"
+     * @return "Items: (none)" or "Items: a, b x3, c"
      */
     public String getItemsInLocation() {
-        if (items.isEmpty()) return "Items: (none)";
-        StringBuilder sb = new StringBuilder("Items: ");
-        for (int i = 0; i < items.size(); i++) {
-            if (i > 0) sb.append(", ");
-            sb.append(items.get(i).getName());
-        }
-        return sb.toString();
+        return items.describe("Items", "(none)");
     }
     /**
      * Adds a person to this location.
@@ -187,6 +291,7 @@ public class Location {
      * @param p the person to add
      */
     public void addPerson(Person p) {
+        checkNotFrozen();
         if (p != null) {
             people.add(p);
         }
@@ -250,5 +355,8 @@ public class Location {
      * Sets whether this location is indoors.
      * @param v true if indoors
      */
-    public void setIndoors(boolean v) { this.indoors = v; }
+    public void setIndoors(boolean v) {
+        checkNotFrozen();
+        this.indoors = v;
+    }
 }
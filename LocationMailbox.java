@@ -0,0 +1,108 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The message queue of one location in a shared world. Everything that
+ * touches the location (a player's turn there, arrivals, departures) is sent
+ * here and carried out one message at a time, in the order it arrived, so
+ * the location's state needs no locking of its own. Mailboxes run on a
+ * shared executor: a mailbox with messages waiting borrows a thread, works
+ * through a batch and gives the thread back, so busy locations spread over
+ * all cores and idle ones cost nothing.
+ *
+ * Work involving two locations (moving, teleporting) never waits on both:
+ * the turn runs in the old location's mailbox, and the arrival is sent to
+ * the new location's mailbox without waiting for it. No mailbox ever blocks
+ * on another, so mailboxes cannot deadlock.
+ */
+public class LocationMailbox {
+    /** Messages handled before the thread is handed back to other mailboxes. */
+    private static final int BATCH = 64;
+
+    private final Location location;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    /** True while a drain is queued or running; at most one at a time. */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Creates a mailbox.
+     * @param location location it serves
+     * @param executor executor that runs the mailbox
+     */
+    public LocationMailbox(Location location, Executor executor) {
+        this.location = location;
+        this.executor = executor;
+    }
+
+    public Location getLocation() { return location; }
+
+    /**
+     * Sends a message without waiting for it to be handled.
+     * @param message work to carry out at this location
+     */
+    public void tell(Runnable message) {
+        queue.add(message);
+        schedule();
+    }
+
+    /**
+     * Sends a message and returns its eventual result.
+     * @param message work to carry out at this location
+     * @return future completed with the message's result (or its exception)
+     */
+    public <T> CompletableFuture<T> ask(Supplier<T> message) {
+        CompletableFuture<T> reply = new CompletableFuture<>();
+        tell(() -> {
+            try {
+                reply.complete(message.get());
+            } catch (RuntimeException | Error e) {
+                reply.completeExceptionally(e);
+            }
+        });
+        return reply;
+    }
+
+    /**
+     * Sends a message and waits for its result. Must not be called from a mailbox.
+     * @param message work to carry out at this location
+     * @return the message's result
+     */
+    public <T> T call(Supplier<T> message) {
+        try {
+            return ask(message).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /** Number of messages waiting. */
+    public int pending() { return queue.size(); }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) executor.execute(this::drain);
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            Runnable message = queue.poll();
+            if (message == null) break;
+            try {
+                message.run();
+            } catch (RuntimeException e) {
+                // a failed message must not stop the location from serving everyone else
+                System.err.println("Message at " + location.getName() + " failed: " + e);
+            }
+        }
+        scheduled.set(false);
+        // messages that arrived after the last poll (or beyond the batch) need another turn
+        if (!queue.isEmpty()) schedule();
+    }
+}
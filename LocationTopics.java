@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who is listening at each location of a shared world. A player is
+ * subscribed to exactly the location they are in; moving or teleporting
+ * switches the subscription. Publishing an event to a location delivers it
+ * to the inboxes of the players there, other than the one it is about.
+ */
+public class LocationTopics {
+    private final ConcurrentHashMap<Location, Set<TourSession>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribes a player to a location.
+     * @param loc location
+     * @param player player now there
+     */
+    public void subscribe(Location loc, TourSession player) {
+        subscribers.computeIfAbsent(loc, l -> ConcurrentHashMap.newKeySet()).add(player);
+    }
+
+    /**
+     * Unsubscribes a player from a location.
+     * @param loc location
+     * @param player player who left
+     */
+    public void unsubscribe(Location loc, TourSession player) {
+        Set<TourSession> here = subscribers.get(loc);
+        if (here != null) here.remove(player);
+    }
+
+    /**
+     * Locations that have had subscribers.
+     * @return snapshot of the locations
+     */
+    public List<Location> locations() {
+        return new ArrayList<>(subscribers.keySet());
+    }
+
+    /**
+     * Players subscribed to a location.
+     * @param loc location
+     * @return snapshot of the players there
+     */
+    public List<TourSession> subscribersOf(Location loc) {
+        Set<TourSession> here = subscribers.get(loc);
+        return (here == null) ? List.of() : new ArrayList<>(here);
+    }
+
+    /**
+     * Delivers an event to everyone at a location except the player it is about.
+     * @param loc location
+     * @param event event
+     * @return number of players it was delivered to
+     */
+    public int publish(Location loc, PlayerEvent event) {
+        Set<TourSession> here = subscribers.get(loc);
+        if (here == null) return 0;
+        int n = 0;
+        for (TourSession player : here) {
+            if (player == event.getSource()) continue;
+            player.getInbox().offer(event);
+            n++;
+        }
+        return n;
+    }
+}
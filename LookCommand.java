@@ -0,0 +1,20 @@
+/**
+ * Command for "look": describes the current location in full, also in
+ * compact output mode where arriving somewhere seen before shows only
+ * what changed.
+ */
+public class LookCommand implements UserInputCommand {
+
+    /**
+     * Describes where the player is.
+     * @return full description of the current location
+     */
+    @Override
+    public String carryOut() {
+        TourStatus ts = TourStatus.getInstance();
+        Location here = ts.getCurrentLocation();
+        if (here == null) return "You're nowhere.";
+        CompactView compact = ts.getCompactView();
+        return (compact == null) ? TourSession.describeInFull(ts, here) : compact.describeFully(ts, here);
+    }
+}
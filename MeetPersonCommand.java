@@ -34,7 +34,12 @@ public class MeetPersonCommand implements UserInputCommand {
 
         Person person = campus.getPersonAtLocation(personName, here.getName());
         if (person == null) {
-            return "There's no one named \"" + personName + "\" here.";
+            NameIndex.Match<Person> m = campus.getPersonIndex().resolve(personName,
+                    p -> here.getName().equalsIgnoreCase(p.getLocation()));
+            if (!m.isUnique()) {
+                return "There's no one named \"" + personName + "\" here." + m.didYouMean();
+            }
+            person = m.get();
         }
 
         return person.getName() + " says: " + person.getDialogue();
@@ -0,0 +1,148 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Where the time goes: one LatencyHistogram per timed operation (each
+ * command type, each phase of loading a campus, save and load, each stage
+ * of the end-of-turn WorldTick) and plain counters for everything else.
+ * Timing an operation costs two clock reads and a few atomic adds, cheap
+ * enough to leave on. Read the numbers with the stats command or over JMX.
+ */
+public final class Metrics {
+    private static final ConcurrentHashMap<String, LatencyHistogram> TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static volatile long startNanos = System.nanoTime();
+    private static boolean registered;
+    /** commandName per command class, worked out once rather than every turn. */
+    private static final ClassValue<String> COMMAND_NAMES = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            String n = type.getSimpleName();
+            if (n.endsWith("Command") && n.length() > "Command".length()) n = n.substring(0, n.length() - "Command".length());
+            return "command." + n.toLowerCase();
+        }
+    };
+
+    private Metrics() { }
+
+    /**
+     * The histogram for a timed operation, created on first use.
+     * @param name operation name such as "command.pickup"
+     * @return histogram
+     */
+    public static LatencyHistogram timer(String name) {
+        LatencyHistogram h = TIMERS.get(name);
+        return (h != null) ? h : TIMERS.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Records how long an operation took from start until now.
+     * @param name operation name
+     * @param startNanos System.nanoTime() when it started
+     * @return now, so consecutive phases can be timed with one clock read each
+     */
+    public static long lap(String name, long startNanos) {
+        long now = System.nanoTime();
+        timer(name).record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Adds one to a counter.
+     * @param name counter name
+     */
+    public static void count(String name) {
+        LongAdder c = COUNTERS.get(name);
+        if (c == null) c = COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+        c.increment();
+    }
+
+    /**
+     * Name under which a command's carryOut time is recorded.
+     * @param cmd command
+     * @return e.g. "command.pickup" for PickupCommand
+     */
+    public static String commandName(UserInputCommand cmd) {
+        return COMMAND_NAMES.get(cmd.getClass());
+    }
+
+
+    /**
+     * Formats every timer and counter, one per line, sorted by name.
+     * @return report text
+     */
+    public static String report() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        StringBuilder sb = new StringBuilder(String.format("%-28s %8s %9s %9s %9s %9s %9s%n",
+                "timer", "count", "per sec", "mean us", "p50 us", "p99 us", "max us"));
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(TIMERS).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (h.getCount() == 0) continue;
+            sb.append(String.format("%-28s %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", e.getKey(), h.getCount(),
+                    h.getCount() / seconds, h.getMeanNanos() / 1e3, h.percentile(50) / 1e3,
+                    h.percentile(99) / 1e3, h.getMaxNanos() / 1e3));
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(COUNTERS).entrySet()) {
+            sb.append(String.format("%-28s %8d%n", e.getKey(), e.getValue().sum()));
+        }
+        return sb.toString().trim();
+    }
+
+    /** Clears every timer and counter and restarts the clock. */
+    public static void reset() {
+        for (LatencyHistogram h : TIMERS.values()) h.reset();
+        for (LongAdder c : COUNTERS.values()) c.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Publishes the metrics over JMX as "TourUMW:type=Metrics". Safe to call more than once.
+     */
+    public static synchronized void registerMBean() {
+        if (registered) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new View(), new ObjectName("TourUMW:type=Metrics"));
+            registered = true;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBean", e);
+        }
+    }
+
+    /** JMX view of the metrics. */
+    private static final class View implements TourMetricsMXBean {
+        @Override
+        public long getUptimeSeconds() { return (System.nanoTime() - startNanos) / 1_000_000_000L; }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> out = new TreeMap<>();
+            for (Map.Entry<String, LatencyHistogram> e : TIMERS.entrySet()) out.put(e.getKey(), e.getValue().getCount());
+            return out;
+        }
+
+        @Override
+        public Map<String, Long> getP99Micros() {
+            Map<String, Long> out = new TreeMap<>();
+            for (Map.Entry<String, LatencyHistogram> e : TIMERS.entrySet()) out.put(e.getKey(), e.getValue().percentile(99) / 1000);
+            return out;
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> out = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) out.put(e.getKey(), e.getValue().sum());
+            return out;
+        }
+
+        @Override
+        public String report() { return Metrics.report(); }
+
+        @Override
+        public void reset() { Metrics.reset(); }
+    }
+}
@@ -2,6 +2,9 @@
  * Movement command handling n/s/e/w.
  */
 public class MovementCommand implements UserInputCommand {
+    /** Key that lets a player into the buildings named in needsMasterKey. */
+    public static final String MASTER_KEY_NAME = "Master Key";
+
     private final String dir;
 
     /**
@@ -33,16 +36,8 @@ public class MovementCommand implements UserInputCommand {
         if (doorToUse == null) return "You can't go that way.";
 
         // Always check locked status for GWH, Monroe Hall, For Five Coffee
-        final String MASTER_KEY_NAME = "Master Key";
         Location dest = doorToUse.getTo();
-        boolean needsMasterKey = false;
-        if (dest != null) {
-            String destName = dest.getName().toLowerCase();
-            if (destName.contains("george washington hall") || destName.contains("monroe hall") || destName.contains("for five coffee")) {
-                needsMasterKey = true;
-            }
-        }
-        if (needsMasterKey) {
+        if (needsMasterKey(dest)) {
             Item masterKey = ts.getItemFromBackpack(MASTER_KEY_NAME);
             if (masterKey == null) {
                 StringBuilder msg = new StringBuilder();
@@ -56,11 +51,11 @@ public class MovementCommand implements UserInputCommand {
                 return msg.toString();
             }
             // Do NOT unlock the door, just allow movement
-        } else if (doorToUse.getIsLocked()) {
+        } else if (ts.getWorld().isDoorLocked(doorToUse)) {
             String requiredKeyName = doorToUse.getKeyItemName();
             Item requiredKeyItem = (requiredKeyName == null) ? null : ts.getItemFromBackpack(requiredKeyName);
             if (requiredKeyItem != null) {
-                doorToUse.setIsLocked(false);
+                ts.getWorld().unlockDoor(doorToUse);
             } else {
                 StringBuilder msg = new StringBuilder();
                 msg.append("The door leading ")
@@ -76,22 +71,33 @@ public class MovementCommand implements UserInputCommand {
         // perform the move
         Location next = doorToUse.getTo();
         if (next == null) return "You can't go that way.";
-        ts.setCurrentLocation(next);
-        next.setHaveVisited(true);
-        ts.recordMove(dir);
+        ts.moveTo(next, dir);
+        // part of a pipelined route: only its end is described
+        if (!ts.isDescribing()) return "";
 
-        StringBuilder sb = new StringBuilder(next.describeLocation(dir));
-        java.util.List<Person> ppl = ts.getCampus().getPeopleAtLocation(next.getName());
-        if (!ppl.isEmpty()) {
-            sb.append(System.lineSeparator());
-            sb.append("People here: ");
-            for (int i = 0; i < ppl.size(); i++) {
-                if (i > 0) sb.append(", ");
-                sb.append(ppl.get(i).getName());
-            }
-        }
-        // Append distance summary after a movement
-        sb.append(System.lineSeparator()).append(ts.getDistanceSummary());
+        StringBuilder sb = new StringBuilder(TourSession.describeArrival(ts, next));
+        // Append distance summary after a movement (compact output leaves it out)
+        if (ts.getCompactView() == null) sb.append(System.lineSeparator()).append(ts.getDistanceSummary());
         return sb.toString();
     }
+
+    /**
+     * Whether entering a location takes the Master Key, whatever its doors say.
+     * @param dest destination location (may be null)
+     * @return true for George Washington Hall, Monroe Hall and For Five Coffee
+     */
+    public static boolean needsMasterKey(Location dest) {
+        return dest != null && needsMasterKey(dest.getName());
+    }
+
+    /**
+     * Whether entering the named location takes the Master Key.
+     * @param locationName destination name (may be null)
+     * @return true for George Washington Hall, Monroe Hall and For Five Coffee
+     */
+    public static boolean needsMasterKey(String locationName) {
+        if (locationName == null) return false;
+        String destName = locationName.toLowerCase();
+        return destName.contains("george washington hall") || destName.contains("monroe hall") || destName.contains("for five coffee");
+    }
 }
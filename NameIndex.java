@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves what the player typed ("cookei", "prof", "design book") to a named
+ * thing on campus. Every name is indexed under its full lowercase form and
+ * under each of its words. A lookup tries, in order:
+ * an exact name, a prefix of a name or word (sorted map range scan), and
+ * finally names within a small edit distance (BK-tree search). The best
+ * unique candidate wins; otherwise the closest candidates are offered as
+ * suggestions.
+ *
+ * @param <T> type of thing being named (Location, Item, Person)
+ */
+public class NameIndex<T> {
+    /** Maximum number of suggestions returned for an ambiguous lookup. */
+    private static final int MAX_SUGGESTIONS = 5;
+    /** Maximum number of keys examined by one prefix scan. */
+    private static final int MAX_PREFIX_SCAN = 256;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** A name (or alias) pointing at a target. */
+    private static class Entry<T> {
+        final String display;
+        final T target;
+
+        Entry(String display, T target) {
+            this.display = display;
+            this.target = target;
+        }
+    }
+
+    /** BK-tree node: one distinct key and the children keyed by their distance to it. */
+    private static class BkNode<T> {
+        final String key;
+        final List<Entry<T>> entries;
+        Map<Integer, BkNode<T>> children;
+
+        BkNode(String key, List<Entry<T>> entries) {
+            this.key = key;
+            this.entries = entries;
+        }
+    }
+
+    /** Full normalized names -> entries. */
+    private final Map<String, List<Entry<T>>> exact = new HashMap<>();
+    /** Full names and single words -> entries, sorted for prefix scans. */
+    private final TreeMap<String, List<Entry<T>>> byKey = new TreeMap<>();
+    private BkNode<T> root;
+    private int size;
+
+    /**
+     * Indexes a target under its name.
+     * @param name display name
+     * @param target thing being named
+     */
+    public void add(String name, T target) {
+        addAlias(name, name, target);
+    }
+
+    /**
+     * Indexes a target under an extra name (e.g. a person's role), displayed as display.
+     * @param alias alternative name the player may type
+     * @param display name shown in suggestions
+     * @param target thing being named
+     */
+    public void addAlias(String alias, String display, T target) {
+        String key = normalize(alias);
+        if (key.isEmpty() || target == null) return;
+        Entry<T> e = new Entry<>(display, target);
+        exact.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+        addKey(key, e);
+        for (String word : key.split(" ")) {
+            if (!word.equals(key)) addKey(word, e);
+        }
+        size++;
+    }
+
+    private void addKey(String key, Entry<T> e) {
+        List<Entry<T>> list = byKey.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            byKey.put(key, list);
+            bkInsert(key, list);
+        }
+        list.add(e);
+    }
+
+    private void bkInsert(String key, List<Entry<T>> entries) {
+        if (root == null) {
+            root = new BkNode<>(key, entries);
+            return;
+        }
+        BkNode<T> node = root;
+        while (true) {
+            int d = distance(key, node.key);
+            if (node.children == null) node.children = new HashMap<>();
+            BkNode<T> child = node.children.get(d);
+            if (child == null) {
+                node.children.put(d, new BkNode<>(key, entries));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /** Number of names and aliases indexed. */
+    public int size() { return size; }
+
+    /**
+     * Resolves player input to one target.
+     * @param query what the player typed
+     * @param filter only targets accepted by the filter are considered (e.g. "is in this room")
+     * @return the unique best match, or suggestions, or nothing
+     */
+    public Match<T> resolve(String query, Predicate<? super T> filter) {
+        String q = normalize(query);
+        if (q.isEmpty()) return new Match<>(null, Collections.emptyList());
+
+        // 1. exact name
+        Map<T, String> hits = new LinkedHashMap<>();
+        collect(exact.get(q), filter, hits);
+        if (!hits.isEmpty()) return toMatch(hits);
+
+        // 2. prefix of a full name or of any word in it
+        int scanned = 0;
+        for (Map.Entry<String, List<Entry<T>>> e : byKey.tailMap(q, true).entrySet()) {
+            if (!e.getKey().startsWith(q) || ++scanned > MAX_PREFIX_SCAN) break;
+            collect(e.getValue(), filter, hits);
+        }
+        if (!hits.isEmpty()) return toMatch(hits);
+
+        // 3. small typos: closest names within the edit-distance bound
+        int bound = q.length() <= 4 ? 1 : 2;
+        List<List<Map.Entry<String, List<Entry<T>>>>> byDistance = new ArrayList<>();
+        for (int i = 0; i <= bound; i++) byDistance.add(new ArrayList<>());
+        bkSearch(q, bound, byDistance);
+        for (List<Map.Entry<String, List<Entry<T>>>> ring : byDistance) {
+            for (Map.Entry<String, List<Entry<T>>> e : ring) collect(e.getValue(), filter, hits);
+            // a unique closest candidate wins; otherwise keep widening for suggestions
+            if (hits.size() == 1) return toMatch(hits);
+        }
+        return new Match<>(null, suggestionsFrom(hits));
+    }
+
+    private void bkSearch(String q, int bound, List<List<Map.Entry<String, List<Entry<T>>>>> out) {
+        if (root == null) return;
+        ArrayList<BkNode<T>> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            BkNode<T> node = stack.remove(stack.size() - 1);
+            int d = distance(q, node.key);
+            if (d <= bound) out.get(d).add(Map.entry(node.key, node.entries));
+            if (node.children == null) continue;
+            for (int k = Math.max(1, d - bound); k <= d + bound; k++) {
+                BkNode<T> child = node.children.get(k);
+                if (child != null) stack.add(child);
+            }
+        }
+    }
+
+    private static <T> void collect(List<Entry<T>> entries, Predicate<? super T> filter, Map<T, String> hits) {
+        if (entries == null) return;
+        for (Entry<T> e : entries) {
+            if (filter == null || filter.test(e.target)) hits.putIfAbsent(e.target, e.display);
+        }
+    }
+
+    private static <T> Match<T> toMatch(Map<T, String> hits) {
+        if (hits.size() == 1) {
+            Map.Entry<T, String> only = hits.entrySet().iterator().next();
+            return new Match<>(only.getKey(), Collections.emptyList());
+        }
+        return new Match<>(null, suggestionsFrom(hits));
+    }
+
+    private static <T> List<String> suggestionsFrom(Map<T, String> hits) {
+        List<String> out = new ArrayList<>();
+        for (String display : hits.values()) {
+            if (out.size() == MAX_SUGGESTIONS) break;
+            out.add(display);
+        }
+        return out;
+    }
+
+    /** Lowercases, trims and collapses internal whitespace. */
+    static String normalize(String s) {
+        if (s == null) return "";
+        return WHITESPACE.matcher(s.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    /** Levenshtein edit distance. */
+    static int distance(String a, String b) {
+        int n = a.length(), m = b.length();
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = (ca == b.charAt(j - 1)) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] t = prev; prev = cur; cur = t;
+        }
+        return prev[m];
+    }
+
+    /**
+     * Result of resolving a name: either one target or a list of suggestions.
+     * @param <T> target type
+     */
+    public static class Match<T> {
+        private final T match;
+        private final List<String> suggestions;
+
+        Match(T match, List<String> suggestions) {
+            this.match = match;
+            this.suggestions = suggestions;
+        }
+
+        /** True when the input resolved to exactly one target. */
+        public boolean isUnique() { return match != null; }
+
+        /** The resolved target, or null. */
+        public T get() { return match; }
+
+        /** Close candidates when the input was ambiguous or misspelled. */
+        public List<String> getSuggestions() { return suggestions; }
+
+        /**
+         * Formats the suggestions for appending to an error message.
+         * @return " Did you mean: a, b?" or "" when there are none
+         */
+        public String didYouMean() {
+            if (suggestions.isEmpty()) return "";
+            return " Did you mean: " + String.join(", ", suggestions) + "?";
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for writing or reading tour state: save, load,
+ * and putting idle sessions away and back.
+ */
+@Name("TourUMW.Persistence")
+@Label("Save/Load")
+@Category("TourUMW")
+@Description("Tour state written to or read from disk")
+public final class PersistenceEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    @Description("save, load, passivate or activate")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    /**
+     * Commits the event if it is being recorded.
+     * @param operation save, load, passivate or activate
+     * @param file file written or read
+     * @param succeeded whether it worked
+     */
+    public void finish(String operation, String file, boolean succeeded) {
+        end();
+        if (!shouldCommit()) return;
+        this.operation = operation;
+        this.file = file;
+        this.succeeded = succeeded;
+        commit();
+    }
+}
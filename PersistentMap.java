@@ -0,0 +1,275 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable hash map. plus and minus return a new map and leave this one
+ * as it was, copying only the path to the changed key (a hash trie of
+ * 32-way nodes, so a handful of small arrays even for large maps) and
+ * sharing the rest. Keeping every version of a changing map therefore costs
+ * little more than keeping the latest; TourStatus keeps one per turn so that
+ * turns can be undone.
+ *
+ * Iteration order is unspecified. Keys and values must not be null.
+ */
+public final class PersistentMap<K, V> implements Iterable<Map.Entry<K, V>> {
+    private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(null, 0);
+    /** Returned by Node.find when the key is absent (values are never null, but keep the two apart anyway). */
+    private static final Object ABSENT = new Object();
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** The empty map. */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Looks a key up.
+     * @param key key
+     * @return its value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) return null;
+        Object v = root.find(0, hash(key), key);
+        return (v == ABSENT) ? null : (V) v;
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * This map with a key set to a value.
+     * @param key key
+     * @param value value
+     * @return the new map (this one if the key already had that value)
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) throw new IllegalArgumentException("PersistentMap keys and values must not be null");
+        boolean[] added = new boolean[1];
+        Node r = (root == null) ? BitmapNode.EMPTY : root;
+        Node n = r.put(0, hash(key), key, value, added);
+        return (n == root) ? this : new PersistentMap<>(n, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * This map without a key.
+     * @param key key
+     * @return the new map (this one if the key was absent)
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) return this;
+        Node n = root.remove(0, hash(key), key);
+        if (n == root) return this;
+        return (n == null) ? empty() : new PersistentMap<>(n, size - 1);
+    }
+
+    /**
+     * Calls an action for every entry.
+     * @param action action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    /** Iterates over a copy of the entries, so the map may be replaced meanwhile. */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(size);
+        forEach((k, v) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(k, v)));
+        return entries.iterator();
+    }
+
+    /** The values, in iteration order. */
+    public List<V> values() {
+        List<V> out = new ArrayList<>(size);
+        forEach((k, v) -> out.add(v));
+        return out;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private abstract static class Node {
+        abstract Object find(int shift, int hash, Object key);
+        /** This node with the key set; this node itself if nothing changed. */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+        /** This node without the key; this node if absent, null if now empty. */
+        abstract Node remove(int shift, int hash, Object key);
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Up to 32 slots chosen by five bits of the hash, present ones packed in
+     * array as [key, value] pairs; a null key means the value is the next
+     * node down.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) { return Integer.bitCount(bitmap & (bit - 1)); }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) return ABSENT;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).find(shift + 5, hash, key);
+            return key.equals(k) ? array[i + 1] : ABSENT;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = value;
+                System.arraycopy(array, i, a, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, a);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node sub = ((Node) v).put(shift + 5, hash, key, value, added);
+                return (sub == v) ? this : with(i, null, sub);
+            }
+            if (key.equals(k)) return (value == v) ? this : with(i, k, value);
+            added[0] = true;
+            return with(i, null, pair(shift + 5, hash(k), k, v, hash, key, value));
+        }
+
+        private BitmapNode with(int i, Object key, Object value) {
+            Object[] a = array.clone();
+            a[i] = key;
+            a[i + 1] = value;
+            return new BitmapNode(bitmap, a);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & 31);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node sub = ((Node) array[i + 1]).remove(shift + 5, hash, key);
+                if (sub == array[i + 1]) return this;
+                if (sub != null) return with(i, null, sub);
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, a);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) ((Node) array[i + 1]).forEach(action);
+                else action.accept(array[i], array[i + 1]);
+            }
+        }
+    }
+
+    /** Keys whose whole hashes are equal, as [key, value] pairs. */
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) if (key.equals(array[i])) return i;
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = (hash == this.hash) ? indexOf(key) : -1;
+            return (i < 0) ? ABSENT : array[i + 1];
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // a different hash reached this far down: split on the bits where they differ
+                BitmapNode n = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] { null, this });
+                return n.put(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) return this;
+                Object[] a = array.clone();
+                a[i + 1] = value;
+                return new CollisionNode(hash, a);
+            }
+            Object[] a = new Object[array.length + 2];
+            System.arraycopy(array, 0, a, 0, array.length);
+            a[array.length] = key;
+            a[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, a);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int i = (hash == this.hash) ? indexOf(key) : -1;
+            if (i < 0) return this;
+            if (array.length == 2) return null;
+            Object[] a = new Object[array.length - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+            return new CollisionNode(hash, a);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) action.accept(array[i], array[i + 1]);
+        }
+    }
+
+    /** A node holding two keys that share the hash bits above shift. */
+    private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2, Object value2) {
+        if (hash1 == hash2) return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+        boolean[] ignored = new boolean[1];
+        return BitmapNode.EMPTY.put(shift, hash1, key1, value1, ignored).put(shift, hash2, key2, value2, ignored);
+    }
+}
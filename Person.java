@@ -4,17 +4,25 @@
 public class Person {
     private String name;
     private String location;
-    private String dialogue;
+    // dialogue text is kept in the shared TextStore; only its handle lives here
+    private long dialogueRef;
+    private String role;
 
     public Person(String name, String location, String dialogue) {
+        this(name, location, dialogue, "");
+    }
+
+    public Person(String name, String location, String dialogue, String role) {
         this.name = name;
         this.location = location;
-        this.dialogue = dialogue;
+        this.dialogueRef = TextStore.getDefault().put(this, dialogue);
+        this.role = role;
     }
 
     public String getName() { return name; }
     public String getLocation() { return location; }
-    public String getDialogue() { return dialogue; }
+    public String getDialogue() { return TextStore.getDefault().get(this, dialogueRef); }
+    public String getRole() { return role; }
 
     @Override
     public String toString() { return name; }
@@ -0,0 +1,38 @@
+/**
+ * Times consecutive phases of one job, such as the sections of a campus
+ * file: each call to done() records the phase in Metrics and, when Flight
+ * Recorder is recording, as a CampusLoadEvent, then starts the next phase.
+ */
+public final class PhaseTimer {
+    private final String prefix;
+    private final String file;
+    private long start = System.nanoTime();
+    private CampusLoadEvent event = new CampusLoadEvent();
+
+    /**
+     * Starts the first phase.
+     * @param prefix metric name prefix, e.g. "campus"
+     * @param file file being loaded
+     */
+    public PhaseTimer(String prefix, String file) {
+        this.prefix = prefix;
+        this.file = file;
+        event.begin();
+    }
+
+    /**
+     * Ends the current phase and starts the next.
+     * @param phase name of the phase just finished, e.g. "doors"
+     */
+    public void done(String phase) {
+        start = Metrics.lap(prefix + "." + phase, start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.file = file;
+            event.commit();
+        }
+        event = new CampusLoadEvent();
+        event.begin();
+    }
+}
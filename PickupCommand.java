@@ -1,8 +1,8 @@
 /**
- * Command for "pickup <itemName>".
+ * Command for "pickup [count|all] <itemName>" and "pickup all".
  */
 public class PickupCommand implements UserInputCommand {
-    /** Item name to pick up. */
+    /** Item name to pick up, optionally preceded by a count or "all". */
     private final String itemName;
 
     /**
@@ -19,8 +19,43 @@ public class PickupCommand implements UserInputCommand {
     public String carryOut() {
         if (itemName == null || itemName.isBlank())
             return "Please specify which item to pick up (e.g., \"pickup hat\").";
-        Item got = TourStatus.getInstance().pickupItemFromLocation(itemName);
-        if (got == null) return "There is no \"" + itemName + "\" here.";
-        return got.getMessage() + " You have 5 turns to use this item before it disappears from your backpack.";
+        TourStatus ts = TourStatus.getInstance();
+        QuantityArg arg = QuantityArg.parse(itemName);
+        if (arg.getCount() < 1) return "Please pick up at least one.";
+        if (arg.getName() == null) return pickupEverything(ts);
+
+        String name = arg.getName();
+        Location here = ts.getCurrentLocation();
+        if (here == null) return "You're nowhere.";
+        // the definition is held from here on, so it can be named even if the last copy goes
+        ItemDefinition got = ts.getWorld().findItem(here, name);
+        if (got == null) {
+            NameIndex.Match<ItemDefinition> m = ts.resolveItemHere(name);
+            if (!m.isUnique()) return "There is no \"" + name + "\" here." + m.didYouMean();
+            got = m.get();
+        }
+        int taken = ts.pickupItemsFromLocation(got.getName(), arg.getCount());
+        // another player in a shared world took the last copy between the lookup and the pickup
+        if (taken == 0) return "Someone beat you to the " + got.getName() + ".";
+        String prefix = (taken == 1 && arg.getCount() == 1) ? ""
+                : "You picked up " + ItemBag.format(got, taken) + ". ";
+        return prefix + got.getMessage() + " You have 5 turns to use this item before it disappears from your backpack.";
+    }
+
+    private String pickupEverything(TourStatus ts) {
+        Location here = ts.getCurrentLocation();
+        if (here == null || ts.getWorld().itemStacks(here).isEmpty()) return "There is nothing here to pick up.";
+        StringBuilder sb = new StringBuilder("You picked up: ");
+        boolean first = true;
+        for (ItemBag.Stack st : new java.util.ArrayList<>(ts.getWorld().itemStacks(here))) {
+            int taken = ts.pickupItemsFromLocation(st.getDefinition().getName(), ItemBag.ALL);
+            // someone else in a shared world emptied this stack first
+            if (taken == 0) continue;
+            if (!first) sb.append(", ");
+            sb.append(ItemBag.format(st.getDefinition(), taken));
+            first = false;
+        }
+        if (first) return "There is nothing here to pick up.";
+        return sb.append(". You have 5 turns to use these items before they disappear from your backpack.").toString();
     }
 }
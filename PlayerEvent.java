@@ -0,0 +1,26 @@
+/**
+ * Something a player did that others nearby should hear about, such as
+ * "Alex picked up the Cookie." One event object is shared by every player
+ * it is delivered to, so fanning it out builds no new strings.
+ */
+public final class PlayerEvent {
+    private final TourSession source;
+    private final String text;
+
+    /**
+     * Creates an event.
+     * @param source player it is about (not told about their own events)
+     * @param text message shown to the others
+     */
+    public PlayerEvent(TourSession source, String text) {
+        this.source = source;
+        this.text = text;
+    }
+
+    public TourSession getSource() { return source; }
+
+    /** The message as text. */
+    public String text() { return text; }
+
+    @Override public String toString() { return text; }
+}
@@ -0,0 +1,46 @@
+/**
+ * Parses an item argument with an optional quantity in front:
+ * "cookie", "5 cookie", "all cookie" or just "all".
+ */
+public class QuantityArg {
+    /** Number of copies wanted (ItemBag.ALL for "all"). */
+    private final int count;
+    /** Item name, or null for a bare "all". */
+    private final String name;
+
+    private QuantityArg(int count, String name) {
+        this.count = count;
+        this.name = name;
+    }
+
+    /**
+     * Parses the text after a verb.
+     * @param arg argument text (may be null)
+     * @return parsed argument; the name is null when arg was blank or a bare "all"
+     */
+    public static QuantityArg parse(String arg) {
+        if (arg == null || arg.isBlank()) return new QuantityArg(1, null);
+        String t = arg.trim();
+        String[] parts = t.split("\\s+", 2);
+        if (parts[0].equalsIgnoreCase("all")) {
+            return new QuantityArg(ItemBag.ALL, parts.length > 1 ? parts[1] : null);
+        }
+        if (parts.length > 1 && parts[0].chars().allMatch(Character::isDigit)) {
+            try {
+                return new QuantityArg(Integer.parseInt(parts[0]), parts[1]);
+            } catch (NumberFormatException e) {
+                return new QuantityArg(ItemBag.ALL, parts[1]);
+            }
+        }
+        return new QuantityArg(1, t);
+    }
+
+    /** Number of copies wanted (ItemBag.ALL for "all"). */
+    public int getCount() { return count; }
+
+    /** Item name, or null for a bare "all". */
+    public String getName() { return name; }
+
+    /** True when the player asked for every copy. */
+    public boolean isAll() { return count == ItemBag.ALL; }
+}
@@ -1,6 +1,5 @@
 import java.io.File;
 import java.io.PrintWriter;
-import java.util.List;
 
 /**
  * Command to save the current tour state to a file.
@@ -25,19 +24,30 @@ public class SaveCommand implements UserInputCommand {
             return "Cannot save: campus is not initialized.";
         }
         File outFile = new File(filename);
+        long start = System.nanoTime();
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        boolean saved = false;
         try (PrintWriter pw = new PrintWriter(outFile)) {
             pw.println("UMW_SAVE_V1");
             pw.println("DATA_FILE: umw_campus_scavenger.txt");
             pw.println("CURRENT_LOCATION: " + status.getCurrentLocation().getName());
-            pw.println("DISTANCE: " + status.getInstance());
+            int[] steps = status.getSteps();
+            pw.println("DISTANCE: " + (steps[0] + steps[1] + steps[2] + steps[3]));
+            // seed and draws so far, so teleports and weather carry on as they would have
+            pw.println("SEED: " + status.getRandom().getSeed() + " " + status.getRandom().getDraws());
             pw.println("BACKPACK:");
-                List<Item> backpack = status.getBackpack();
-            for (Item item : backpack) {
-                pw.println(item.getName());
+            // one line per kind of item: "Name", or "Name xN" for several copies
+            for (ItemBag.Stack stack : status.getBackpack().stacks()) {
+                pw.println(stack);
             }
             pw.println("END_BACKPACK");
+            saved = true;
         } catch (Exception e) {
             return "Error saving game: " + e.getMessage();
+        } finally {
+            Metrics.lap("save.write", start);
+            event.finish("save", filename, saved);
         }
         return "Game saved to " + filename + ".";
     }
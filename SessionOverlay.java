@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One tour's copy-on-write view of a frozen campus template. Only the
+ * differences are stored: item count changes per location, visited locations
+ * and unlocked doors. Everything else is read straight from the template, so
+ * a session costs memory in proportion to what that player changed.
+ *
+ * The differences are held in PersistentMaps, so copy() is O(1): a tour keeps
+ * a copy per turn for undo (see TourStatus.checkpoint) and each one costs
+ * only the few nodes that turn changed.
+ */
+public class SessionOverlay implements WorldState {
+
+    /** A change in the number of copies of one item at one location. */
+    private static final class Change {
+        final ItemDefinition def;
+        final int delta;
+        /** When the change was first made, for listing changes in that order. */
+        final long made;
+
+        Change(ItemDefinition def, int delta, long made) {
+            this.def = def;
+            this.delta = delta;
+            this.made = made;
+        }
+    }
+
+    private static final Comparator<Map.Entry<?, Change>> ORDER_MADE = Comparator.comparingLong(e -> e.getValue().made);
+
+    private final Campus template;
+    /** Location -> (lowercase item name -> change), only for locations whose items differ. */
+    private PersistentMap<Location, PersistentMap<String, Change>> changesByLocation = PersistentMap.empty();
+    /** The same changes by lowercase item name -> (location -> change). */
+    private PersistentMap<String, PersistentMap<Location, Change>> changesByItem = PersistentMap.empty();
+    private PersistentMap<Location, Boolean> visited = PersistentMap.empty();
+    private PersistentMap<Door, Boolean> unlocked = PersistentMap.empty();
+    private long changesMade;
+
+    /**
+     * Creates an empty overlay.
+     * @param template the campus being toured
+     */
+    public SessionOverlay(Campus template) {
+        this.template = template;
+    }
+
+    /** The campus template this overlay sits on. */
+    public Campus getTemplate() { return template; }
+
+    /**
+     * A copy of this overlay, made in O(1); the two share everything until either changes.
+     * @return the copy
+     */
+    public SessionOverlay copy() {
+        SessionOverlay o = new SessionOverlay(template);
+        o.replaceWith(this);
+        return o;
+    }
+
+    /**
+     * Makes this overlay hold exactly the changes another holds, in O(1).
+     * @param other overlay on the same template (not changed)
+     */
+    public void replaceWith(SessionOverlay other) {
+        if (other.template != template) throw new IllegalArgumentException("Overlay is on a different campus");
+        changesByLocation = other.changesByLocation;
+        changesByItem = other.changesByItem;
+        visited = other.visited;
+        unlocked = other.unlocked;
+        changesMade = other.changesMade;
+    }
+
+    private static String keyFor(String name) { return name.trim().toLowerCase(); }
+
+    private Change changeAt(Location loc, String key) {
+        PersistentMap<String, Change> m = changesByLocation.get(loc);
+        return (m == null) ? null : m.get(key);
+    }
+
+    @Override
+    public int itemCount(Location loc, String itemName) {
+        if (loc == null || itemName == null) return 0;
+        Change c = changeAt(loc, keyFor(itemName));
+        return loc.getItemCount(itemName) + (c == null ? 0 : c.delta);
+    }
+
+    @Override
+    public ItemDefinition findItem(Location loc, String itemName) {
+        if (itemCount(loc, itemName) <= 0) return null;
+        ItemDefinition def = loc.findItem(itemName);
+        return (def != null) ? def : changeAt(loc, keyFor(itemName)).def;
+    }
+
+    @Override
+    public Collection<ItemBag.Stack> itemStacks(Location loc) {
+        PersistentMap<String, Change> changes = changesByLocation.get(loc);
+        if (changes == null) return loc.getItemStacks();
+        List<ItemBag.Stack> merged = new ArrayList<>();
+        for (ItemBag.Stack s : loc.getItemStacks()) {
+            Change c = changes.get(s.getDefinition().getKey());
+            int n = s.getCount() + (c == null ? 0 : c.delta);
+            if (n > 0) merged.add(new ItemBag.Stack(s.getDefinition(), n, merged.size()));
+        }
+        for (Map.Entry<String, Change> e : inOrderMade(changes)) {
+            Change c = e.getValue();
+            if (c.delta > 0 && loc.getItemCount(c.def.getName()) == 0) merged.add(new ItemBag.Stack(c.def, c.delta, merged.size()));
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    @Override
+    public void addItems(Location loc, ItemDefinition def, int count) {
+        if (loc == null || def == null || count < 1) return;
+        adjust(loc, def, count);
+    }
+
+    @Override
+    public int removeItems(Location loc, String itemName, int count) {
+        ItemDefinition def = findItem(loc, itemName);
+        if (def == null || count < 1) return 0;
+        int taken = Math.min(count, itemCount(loc, itemName));
+        adjust(loc, def, -taken);
+        return taken;
+    }
+
+    private void adjust(Location loc, ItemDefinition def, int delta) {
+        String key = def.getKey();
+        PersistentMap<String, Change> atLoc = changesByLocation.get(loc);
+        if (atLoc == null) atLoc = PersistentMap.empty();
+        PersistentMap<Location, Change> byItem = changesByItem.get(key);
+        if (byItem == null) byItem = PersistentMap.empty();
+        Change c = atLoc.get(key);
+        if (c == null) c = new Change(def, 0, changesMade++);
+        if (c.delta + delta == 0) {
+            // back to the template's count: forget the change
+            atLoc = atLoc.minus(key);
+            byItem = byItem.minus(loc);
+        } else {
+            c = new Change(c.def, c.delta + delta, c.made);
+            atLoc = atLoc.plus(key, c);
+            byItem = byItem.plus(loc, c);
+        }
+        changesByLocation = atLoc.isEmpty() ? changesByLocation.minus(loc) : changesByLocation.plus(loc, atLoc);
+        changesByItem = byItem.isEmpty() ? changesByItem.minus(key) : changesByItem.plus(key, byItem);
+    }
+
+    /** Entries of a change map in the order the changes were first made. */
+    private static <K> List<Map.Entry<K, Change>> inOrderMade(PersistentMap<K, Change> changes) {
+        List<Map.Entry<K, Change>> out = new ArrayList<>(changes.size());
+        for (Map.Entry<K, Change> e : changes) out.add(e);
+        out.sort(ORDER_MADE);
+        return out;
+    }
+
+    @Override
+    public Map<Location, Integer> itemLocations(String itemName) {
+        if (itemName == null) return Map.of();
+        Map<Location, Integer> base = template.getItemLocations(itemName);
+        PersistentMap<Location, Change> changes = changesByItem.get(keyFor(itemName));
+        if (changes == null) return base;
+        Map<Location, Integer> out = new LinkedHashMap<>();
+        for (Map.Entry<Location, Integer> e : base.entrySet()) {
+            Change c = changes.get(e.getKey());
+            int n = e.getValue() + (c == null ? 0 : c.delta);
+            if (n > 0) out.put(e.getKey(), n);
+        }
+        for (Map.Entry<Location, Change> e : inOrderMade(changes)) {
+            if (!base.containsKey(e.getKey()) && e.getValue().delta > 0) out.put(e.getKey(), e.getValue().delta);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean isVisited(Location loc) { return visited.containsKey(loc); }
+
+    @Override
+    public void markVisited(Location loc) {
+        if (loc != null) visited = visited.plus(loc, Boolean.TRUE);
+    }
+
+    @Override
+    public Collection<Location> visitedLocations() { return keys(visited); }
+
+    @Override
+    public boolean isDoorLocked(Door door) {
+        return door.getIsLocked() && !unlocked.containsKey(door);
+    }
+
+    @Override
+    public void unlockDoor(Door door) {
+        if (door != null && door.getIsLocked()) unlocked = unlocked.plus(door, Boolean.TRUE);
+    }
+
+    private static <K> Collection<K> keys(PersistentMap<K, Boolean> set) {
+        List<K> out = new ArrayList<>(set.size());
+        set.forEach((k, v) -> out.add(k));
+        return Collections.unmodifiableList(out);
+    }
+
+    /** Number of locations whose items differ from the template. */
+    public int changedLocationCount() { return changesByLocation.size(); }
+
+    /**
+     * How this tour's items differ from the template.
+     * @return location -> (item -> copies added, or removed if negative)
+     */
+    public Map<Location, Map<ItemDefinition, Integer>> getItemChanges() {
+        Map<Location, Map<ItemDefinition, Integer>> out = new LinkedHashMap<>();
+        for (Map.Entry<Location, PersistentMap<String, Change>> e : changesByLocation) {
+            Map<ItemDefinition, Integer> atLoc = new LinkedHashMap<>();
+            for (Map.Entry<String, Change> c : inOrderMade(e.getValue())) atLoc.put(c.getValue().def, c.getValue().delta);
+            out.put(e.getKey(), atLoc);
+        }
+        return out;
+    }
+
+    /** Doors this tour has unlocked. */
+    public Collection<Door> getUnlockedDoors() { return keys(unlocked); }
+}
@@ -0,0 +1,398 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds the tours of a server. A tour nobody has typed into for the idle
+ * timeout is written to a snapshot file (see SessionSnapshot) and dropped
+ * from memory; the next command for it reads it back first, so the player
+ * never notices: the snapshot holds the turns that can still be undone and,
+ * in compact output mode, what each place looked like when last shown.
+ * Memory therefore grows with the number of active players,
+ * not connected ones. Turns only pass on input, so a tour's countdowns are
+ * unaffected by how long it sat on disk.
+ *
+ * Each tour's commands are carried out one at a time; different tours run
+ * in parallel. When the campus file is reloaded (see CampusWatcher), each
+ * tour moves to the new WorldVersion just before its next command.
+ *
+ * In real-time mode (see runInRealTime) a WorldClock lets a turn pass for
+ * every tour on a fixed period whether or not the player types, all tours
+ * ticked together in parallel (see WorldTick.runAll), and what happens is
+ * streamed to the tour's spectators (see spectate) as it
+ * happens. A tour on disk keeps its place on the clock; when it is read
+ * back the turns it missed pass at once, as one frame, up to
+ * MAX_CATCH_UP_TURNS of them.
+ */
+public class SessionRegistry implements AutoCloseable {
+    /**
+     * Most real-time turns caught up for a tour read back from disk. Enough
+     * for every countdown (teleport, weather, disappearing items) to come
+     * round several times; a tour left for longer just misses the rest.
+     */
+    public static final int MAX_CATCH_UP_TURNS = 100;
+
+    /** One tour, in memory or on disk. */
+    private static final class Entry {
+        final String id;
+        /** The tour while in memory, null while on disk; guarded by the entry. */
+        TourSession live;
+        /** Campus version the tour is on; guarded by the entry. */
+        WorldVersion version;
+        volatile long lastActive = System.nanoTime();
+        /** Spectators of the tour; handed to every session object the tour goes through. */
+        final TourPublisher spectators = new TourPublisher();
+        /** True while the tour takes real-time turns: from runInRealTime until it is over or closed; guarded by the entry. */
+        boolean onClock;
+        /** Real-time turns that passed while the tour was on disk, up to MAX_CATCH_UP_TURNS; guarded by the entry. */
+        int missedTurns;
+
+        Entry(String id, TourSession live, WorldVersion version) {
+            this.id = id;
+            this.live = live;
+            this.version = version;
+            live.setSpectators(spectators);
+            live.setTourId(id);
+        }
+    }
+
+    /** A recent campus version; new tours start on its latest(). */
+    private volatile WorldVersion world;
+    private final Path dir;
+    private final long idleNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger resident = new AtomicInteger();
+    private final ScheduledExecutorService sweeper;
+    /** Real-time turn timer and the pool its turns run on; null until runInRealTime. */
+    private volatile WorldClock.Timer clockTimer;
+    private volatile ForkJoinPool tickPool;
+    /** True while one real-time turn is still being ticked. */
+    private final AtomicBoolean ticking = new AtomicBoolean();
+
+    /**
+     * Creates a registry of tours of their own.
+     * @param campus campus toured
+     * @param dir directory for idle tours
+     * @param idleTimeout how long a tour may sit unused before it is put away
+     * @throws IOException if the directory cannot be created
+     */
+    public SessionRegistry(Campus campus, Path dir, Duration idleTimeout) throws IOException {
+        this(WorldVersion.initial(campus, null), dir, idleTimeout);
+    }
+
+    /**
+     * Creates a registry of tours sharing one world.
+     * @param world shared world
+     * @param dir directory for idle tours
+     * @param idleTimeout how long a tour may sit unused before it is put away
+     * @throws IOException if the directory cannot be created
+     */
+    public SessionRegistry(SharedWorld world, Path dir, Duration idleTimeout) throws IOException {
+        this(WorldVersion.initial(world.getTemplate(), world), dir, idleTimeout);
+    }
+
+    /**
+     * Creates a registry on a campus version that may be replaced by reloads.
+     * @param world campus version (tours follow it to later versions)
+     * @param dir directory for idle tours
+     * @param idleTimeout how long a tour may sit unused before it is put away
+     * @throws IOException if the directory cannot be created
+     */
+    public SessionRegistry(WorldVersion world, Path dir, Duration idleTimeout) throws IOException {
+        if (idleTimeout.isNegative() || idleTimeout.isZero())
+            throw new IllegalArgumentException("Idle timeout must be positive");
+        this.world = world;
+        this.dir = Files.createDirectories(dir);
+        this.idleNanos = idleTimeout.toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-passivator");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, idleTimeout.toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::passivateIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a tour at the campus's starting location.
+     * @param playerName player name
+     * @return id for later commands
+     */
+    public String open(String playerName) {
+        WorldVersion v = world.latest();
+        world = v;
+        return open(playerName, v);
+    }
+
+    /**
+     * Starts a tour of another campus (see CampusRegistry) in this registry.
+     * The tour follows that campus's reloads, not this registry's.
+     * @param playerName player name
+     * @param campus campus version to tour
+     * @return id for later commands
+     */
+    public String open(String playerName, WorldVersion campus) {
+        WorldVersion v = campus.latest();
+        TourSession session = (v.getSharedWorld() != null) ? TourSession.join(playerName, v.getSharedWorld())
+                : TourSession.solo(playerName, new TourStatus(), v.getCampus());
+        String id = UUID.randomUUID().toString();
+        Entry e = new Entry(id, session, v);
+        entries.put(id, e);
+        resident.incrementAndGet();
+        if (clockTimer != null) {
+            synchronized (e) {
+                startClock(e);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Lets turns pass on the wall clock instead of on commands, for every
+     * tour now and later. Once a turn the clock ticks every tour, split over
+     * a fork-join pool (see WorldTick.runAll); each tour's countdowns
+     * advance, and anything its player should hear goes to its spectators as
+     * a frame. A turn that comes round while the last one is still being
+     * ticked is skipped.
+     * @param clock clock that drives the turns
+     * @param turn time a turn lasts
+     */
+    public synchronized void runInRealTime(WorldClock clock, Duration turn) {
+        if (clockTimer != null) throw new IllegalStateException("Already running in real time");
+        tickPool = new ForkJoinPool();
+        for (Entry e : entries.values()) {
+            synchronized (e) {
+                startClock(e);
+            }
+        }
+        clockTimer = clock.every(turn, this::clockTurns);
+    }
+
+    /** Puts a tour on the clock; caller holds the entry. */
+    private void startClock(Entry e) {
+        if (e.onClock) return;
+        if (e.live != null) e.live.setRealTime(true);
+        e.onClock = true;
+    }
+
+    /** One real-time turn for every tour, in parallel. */
+    private void clockTurns() {
+        if (!ticking.compareAndSet(false, true)) return;
+        try {
+            List<Supplier<String>> turns = new ArrayList<>(entries.size());
+            for (Entry e : entries.values()) turns.add(() -> clockTurn(e));
+            WorldTick.runAll(turns, tickPool);
+        } finally {
+            ticking.set(false);
+        }
+    }
+
+    /** One real-time turn for a tour; what it says goes to the spectators (see TourSession.tick). */
+    private String clockTurn(Entry e) {
+        synchronized (e) {
+            if (!e.onClock) return "";
+            if (e.live == null) {
+                if (e.missedTurns < MAX_CATCH_UP_TURNS) e.missedTurns++;
+                return "";
+            }
+            String out = e.live.tick();
+            if (e.live.isOver()) e.onClock = false;
+            return out;
+        }
+    }
+
+    /**
+     * Carries out one line of input for a tour, reading it back from disk if it was put away.
+     * @param id tour id
+     * @param input what the player typed
+     * @return what the player should see
+     */
+    public String handle(String id, String input) {
+        return withSession(id, s -> s.handle(input));
+    }
+
+    /**
+     * Runs work against a tour, one at a time per tour, reading it back from disk if needed.
+     * @param id tour id
+     * @param work work to run
+     * @return the work's result
+     */
+    public <T> T withSession(String id, Function<TourSession, T> work) {
+        Entry e = entries.get(id);
+        if (e == null) throw new IllegalArgumentException("No tour with id " + id);
+        synchronized (e) {
+            if (e.live == null) {
+                e.live = activate(e);
+                e.live.setSpectators(e.spectators);
+                e.live.setTourId(e.id);
+                catchUp(e);
+            }
+            WorldVersion latest = e.version.latest();
+            if (latest != e.version) {
+                e.live = e.version.migrate(e.live, latest);
+                e.live.setSpectators(e.spectators);
+                e.live.setTourId(e.id);
+                if (e.onClock) e.live.setRealTime(true);
+                e.version = latest;
+            }
+            e.lastActive = System.nanoTime();
+            return work.apply(e.live);
+        }
+    }
+
+    /**
+     * Lets the real-time turns a tour missed on disk pass, as one frame to
+     * its spectators like any other real-time turn; caller holds the entry.
+     */
+    private void catchUp(Entry e) {
+        if (!e.onClock) return;
+        e.live.setRealTime(true);
+        e.live.tick(e.missedTurns);
+        e.missedTurns = 0;
+        if (e.live.isOver()) e.onClock = false;
+    }
+
+    /**
+     * Lets a spectator watch a tour's turns as they happen. The stream ends
+     * when the tour is closed; a slow spectator skips frames rather than
+     * slowing the tour down (see TourPublisher).
+     * @param id tour id
+     * @return publisher of the tour's turns
+     */
+    public Flow.Publisher<TourFrame> spectate(String id) {
+        Entry e = entries.get(id);
+        if (e == null) throw new IllegalArgumentException("No tour with id " + id);
+        return e.spectators;
+    }
+
+    /**
+     * Ends a tour and forgets it.
+     * @param id tour id
+     */
+    public void close(String id) {
+        Entry e = entries.remove(id);
+        if (e == null) return;
+        synchronized (e) {
+            e.onClock = false;
+            e.spectators.close();
+            if (e.live != null) {
+                e.live.leave();
+                e.live = null;
+                resident.decrementAndGet();
+            }
+            try {
+                Files.deleteIfExists(fileFor(id));
+            } catch (IOException ignored) {
+                // a stray snapshot is harmless
+            }
+        }
+    }
+
+    /**
+     * Puts away every tour idle for longer than the timeout. Runs periodically on its own.
+     * @return number of tours put away
+     */
+    public int passivateIdle() {
+        long now = System.nanoTime();
+        int n = 0;
+        for (Entry e : entries.values()) {
+            if (now - e.lastActive < idleNanos) continue;
+            synchronized (e) {
+                if (e.live == null || now - e.lastActive < idleNanos) continue;
+                try {
+                    passivate(e);
+                    n++;
+                } catch (IOException ex) {
+                    // leave it in memory and try again next sweep
+                }
+            }
+        }
+        return n;
+    }
+
+    private void passivate(Entry e) throws IOException {
+        long start = System.nanoTime();
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        Path file = fileFor(e.id);
+        Path tmp = file.resolveSibling(e.id + ".tmp");
+        boolean written = false;
+        try {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))) {
+                SessionSnapshot.write(e.live, out);
+                if (out.checkError()) throw new IOException("Could not write " + tmp);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written = true;
+        } finally {
+            event.finish("passivate", file.toString(), written);
+        }
+        e.live.suspend();
+        e.live = null;
+        resident.decrementAndGet();
+        Metrics.lap("session.passivate", start);
+    }
+
+    private TourSession activate(Entry e) {
+        long start = System.nanoTime();
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        Path file = fileFor(e.id);
+        boolean read = false;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            TourSession s = SessionSnapshot.read(in, e.version.getCampus(), e.version.getSharedWorld());
+            Files.delete(file);
+            read = true;
+            resident.incrementAndGet();
+            Metrics.lap("session.activate", start);
+            return s;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not restore tour " + e.id, ex);
+        } finally {
+            event.finish("activate", file.toString(), read);
+        }
+    }
+
+    private Path fileFor(String id) {
+        return dir.resolve(id + ".session");
+    }
+
+    /** Number of tours, in memory or on disk. */
+    public int size() { return entries.size(); }
+
+    /** Number of tours currently in memory. */
+    public int residentCount() { return resident.get(); }
+
+    /** True if the id names a tour. */
+    public boolean contains(String id) { return entries.containsKey(id); }
+
+    /** Stops putting tours away and, in real time, letting turns pass. Tours already on disk stay there. */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        WorldClock.Timer timer = clockTimer;
+        if (timer != null) {
+            timer.cancel();
+            tickPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a whole tour to text and reads it back: position, backpack, step
+ * counts, every countdown (teleport, weather, disappearing items), the
+ * random source (so teleports and weather come out the same), visited
+ * locations and, for a tour of its own, how its items and doors differ from
+ * the campus. Turns only pass when the player types something, so a tour
+ * read back carries on exactly where it stopped.
+ *
+ * In compact output mode, what the tour was last shown of each location
+ * goes along (SEEN: the items with their counts, then the people, then the
+ * doors, each list led by its length). So do the turns a tour of its own
+ * can undo: each is an UNDO line followed by the state records of the tour
+ * before that turn, oldest first.
+ *
+ * The format is one tab-separated record per line, after a header line:
+ * <pre>
+ * UMW_SESSION_V1
+ * PLAYER    Alex
+ * OVER      false
+ * OUTPUT    compact
+ * SEEN      Bell Tower  1  Cookie  2  0  1  S -> Double Drive
+ * LOCATION  Bell Tower
+ * STEPS     1  0  2  0
+ * TELEPORT  2  false  0
+ * RANDOM    -4962768465676381896  7
+ * WEATHER   Hurricane  4
+ * BACKPACK  Cookie  3
+ * DISAPPEAR Cookie  4
+ * VISITED   Bell Tower
+ * UNLOCKED  Bell Tower  w
+ * ITEMS     Bell Tower  Cookie  -3
+ * UNDO
+ * LOCATION  Double Drive
+ * ...
+ * </pre>
+ */
+public final class SessionSnapshot {
+    /** First line of every snapshot. */
+    public static final String HEADER = "UMW_SESSION_V1";
+
+    private SessionSnapshot() { }
+
+    /**
+     * Writes a session.
+     * @param session session to write
+     * @param out destination
+     */
+    public static void write(TourSession session, PrintWriter out) {
+        TourStatus ts = session.getStatus();
+        out.println(HEADER);
+        record(out, "PLAYER", session.getPlayerName());
+        record(out, "OVER", session.isOver());
+        CompactView view = ts.getCompactView();
+        if (view != null) {
+            record(out, "OUTPUT", "compact");
+            for (Location loc : view.getSeenLocations()) {
+                List<Object> f = new ArrayList<>();
+                f.add(loc.getName());
+                f.add(view.seenItems(loc).size());
+                for (Map.Entry<String, Integer> e : view.seenItems(loc).entrySet()) {
+                    f.add(e.getKey());
+                    f.add(e.getValue());
+                }
+                f.add(view.seenPeople(loc).size());
+                f.addAll(view.seenPeople(loc));
+                f.add(view.seenDoors(loc).size());
+                f.addAll(view.seenDoors(loc));
+                record(out, "SEEN", f.toArray());
+            }
+        }
+        writeState(ts, out);
+        ts.forEachUndoableTurn(before -> {
+            record(out, "UNDO");
+            writeState(before, out);
+        });
+    }
+
+    /** Writes the records a turn can change (see TourStatus.checkpoint). */
+    private static void writeState(TourStatus ts, PrintWriter out) {
+        record(out, "LOCATION", ts.getCurrentLocation().getName());
+        int[] steps = ts.getSteps();
+        record(out, "STEPS", steps[0], steps[1], steps[2], steps[3]);
+        record(out, "TELEPORT", ts.getTurnsSinceTeleport(), ts.hasPendingTeleport(), ts.getTeleportCountdown());
+        record(out, "RANDOM", ts.getRandom().getSeed(), ts.getRandom().getDraws());
+        if (ts.hasPendingWeather()) record(out, "WEATHER", ts.getPendingWeather().getName(), ts.getPendingWeatherTurns());
+        for (ItemBag.Stack st : ts.getBackpack().stacks()) record(out, "BACKPACK", st.getDefinition().getName(), st.getCount());
+        for (Map.Entry<Item, Integer> e : ts.getPendingDisappears().entrySet()) {
+            record(out, "DISAPPEAR", e.getKey().getName(), e.getValue());
+        }
+        for (Location loc : ts.getWorld().visitedLocations()) record(out, "VISITED", loc.getName());
+        if (ts.getWorld() instanceof SessionOverlay) {
+            SessionOverlay overlay = (SessionOverlay) ts.getWorld();
+            for (Door d : overlay.getUnlockedDoors()) record(out, "UNLOCKED", d.getFrom().getName(), d.getDirection());
+            for (Map.Entry<Location, Map<ItemDefinition, Integer>> e : overlay.getItemChanges().entrySet()) {
+                for (Map.Entry<ItemDefinition, Integer> c : e.getValue().entrySet()) {
+                    record(out, "ITEMS", e.getKey().getName(), c.getKey().getName(), c.getValue());
+                }
+            }
+        }
+    }
+
+    private static void record(PrintWriter out, String kind, Object... fields) {
+        out.print(kind);
+        for (Object f : fields) out.print("\t" + f);
+        out.println();
+    }
+
+    /**
+     * Reads a session written by write().
+     * @param in source
+     * @param campus campus the tour was on
+     * @param shared shared world the tour was part of, or null for a tour of its own
+     * @return the restored session
+     * @throws IOException if the snapshot cannot be read or does not fit the campus
+     */
+    public static TourSession read(BufferedReader in, Campus campus, SharedWorld shared) throws IOException {
+        return read(in, campus, shared, null);
+    }
+
+    /**
+     * Reads a session written against an earlier load of the campus file,
+     * translating names through the differences. Anything that no longer
+     * exists is left out; a tour whose location is gone resumes at the
+     * starting location, and carried items that are gone stay in the backpack.
+     * @param in source
+     * @param campus the newly loaded campus
+     * @param shared shared world on the new campus, or null for a tour of its own
+     * @param diff differences from the campus the snapshot was written on, or null if it is the same
+     * @return the restored session
+     * @throws IOException if the snapshot cannot be read (or, without a diff, does not fit the campus)
+     */
+    public static TourSession read(BufferedReader in, Campus campus, SharedWorld shared, CampusDiff diff)
+            throws IOException {
+        if (!HEADER.equals(in.readLine())) throw new IOException("Not a session snapshot");
+        TourStatus ts = new TourStatus();
+        ts.setCampus(campus);
+        if (shared != null) ts.setWorld(shared.viewFor());
+        // the tour, or after an UNDO line the state before one of its turns
+        TourStatus target = ts;
+        // items that are not part of the campus (e.g. made by using another item), shared by name
+        Map<String, ItemDefinition> madeUp = new HashMap<>();
+        String player = null;
+        boolean over = false;
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            String[] f = line.split("\t");
+            WorldState world = target.getWorld();
+            try {
+                switch (f[0]) {
+                    case "PLAYER": player = f[1]; break;
+                    case "OVER": over = Boolean.parseBoolean(f[1]); break;
+                    case "OUTPUT": ts.setCompact(f[1].equals("compact")); break;
+                    case "SEEN": {
+                        Location loc = location(campus, diff, f[1]);
+                        if (loc != null && ts.getCompactView() != null) seen(ts.getCompactView(), loc, f, diff);
+                        break;
+                    }
+                    case "UNDO": {
+                        if (target != ts) finishUndoable(ts, target);
+                        target = new TourStatus();
+                        target.setCampus(campus);
+                        break;
+                    }
+                    case "LOCATION": {
+                        Location loc = location(campus, diff, f[1]);
+                        target.setCurrentLocation(loc != null ? loc : campus.getStartingLocation());
+                        break;
+                    }
+                    case "STEPS":
+                        target.setSteps(Integer.parseInt(f[1]), Integer.parseInt(f[2]), Integer.parseInt(f[3]), Integer.parseInt(f[4]));
+                        break;
+                    case "TELEPORT":
+                        target.restoreTeleport(Integer.parseInt(f[1]), Boolean.parseBoolean(f[2]), Integer.parseInt(f[3]));
+                        break;
+                    case "RANDOM": target.setRandom(TourRandom.restore(Long.parseLong(f[1]), Long.parseLong(f[2]))); break;
+                    case "WEATHER": {
+                        Weather w = WeatherFactory.named(f[1]);
+                        if (w == null) throw new IOException("Unknown weather \"" + f[1] + "\"");
+                        target.setPendingWeather(w, Integer.parseInt(f[2]));
+                        break;
+                    }
+                    case "BACKPACK": target.addToBackpack(item(campus, diff, madeUp, f[1]), Integer.parseInt(f[2])); break;
+                    case "DISAPPEAR":
+                        target.restorePendingDisappear(new Item(item(campus, diff, madeUp, f[1])), Integer.parseInt(f[2]));
+                        break;
+                    case "VISITED": {
+                        Location loc = location(campus, diff, f[1]);
+                        if (loc != null) world.markVisited(loc);
+                        break;
+                    }
+                    case "UNLOCKED": {
+                        Location loc = location(campus, diff, f[1]);
+                        Door door = (loc == null) ? null : door(loc, f[2].charAt(0), diff);
+                        if (door != null) world.unlockDoor(door);
+                        break;
+                    }
+                    case "ITEMS": {
+                        Location loc = location(campus, diff, f[1]);
+                        // an item the new campus no longer has stays gone; only the backpack carries one over
+                        if (loc == null || (diff != null && diff.itemName(f[2]) == null)) break;
+                        ItemDefinition def = item(campus, diff, madeUp, f[2]);
+                        int delta = Integer.parseInt(f[3]);
+                        if (delta > 0) world.addItems(loc, def, delta);
+                        else world.removeItems(loc, def.getName(), -delta);
+                        break;
+                    }
+                    default: throw new IOException("Unknown record \"" + f[0] + "\"");
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IOException("Malformed line: " + line, e);
+            }
+        }
+        if (target != ts) finishUndoable(ts, target);
+        if (ts.getCurrentLocation() == null) throw new IOException("Snapshot has no LOCATION");
+        return TourSession.resume(player, ts, shared, over);
+    }
+
+    /** Adds a state read after an UNDO line to the tour's undo history. */
+    private static void finishUndoable(TourStatus ts, TourStatus before) throws IOException {
+        if (before.getCurrentLocation() == null) throw new IOException("UNDO state has no LOCATION");
+        ts.addUndoableTurn(before);
+    }
+
+    /** Reads a SEEN record: items and counts, people, doors, each led by its length. */
+    private static void seen(CompactView view, Location loc, String[] f, CampusDiff diff) {
+        int i = 2;
+        Map<String, Integer> items = new LinkedHashMap<>();
+        for (int n = Integer.parseInt(f[i++]); n > 0; n--, i += 2) {
+            String name = (diff == null || diff.itemName(f[i]) == null) ? f[i] : diff.itemName(f[i]);
+            items.put(name, Integer.parseInt(f[i + 1]));
+        }
+        List<String> people = new ArrayList<>();
+        for (int n = Integer.parseInt(f[i++]); n > 0; n--) people.add(f[i++]);
+        List<String> doors = new ArrayList<>();
+        for (int n = Integer.parseInt(f[i++]); n > 0; n--) doors.add(f[i++]);
+        view.restoreSeen(loc, items, people, doors);
+    }
+
+    /** The named location; with a diff, translated and null if it is gone. */
+    private static Location location(Campus campus, CampusDiff diff, String name) throws IOException {
+        String current = (diff == null) ? name : diff.locationName(name);
+        Location loc = (current == null) ? null : campus.getLocation(current);
+        if (loc == null && diff == null) throw new IOException("Unknown location \"" + name + "\"");
+        return loc;
+    }
+
+    private static Door door(Location from, char direction, CampusDiff diff) throws IOException {
+        for (Door d : from.getDoors()) {
+            if (d.getDirection() == direction) return d;
+        }
+        if (diff != null) return null;
+        throw new IOException("No door " + direction + " from " + from.getName());
+    }
+
+    private static ItemDefinition item(Campus campus, CampusDiff diff, Map<String, ItemDefinition> madeUp, String name) {
+        String current = (diff == null || diff.itemName(name) == null) ? name : diff.itemName(name);
+        ItemDefinition def = campus.getItemDefinition(current);
+        return (def != null) ? def : madeUp.computeIfAbsent(current.toLowerCase(), k -> new ItemDefinition(current, ""));
+    }
+}
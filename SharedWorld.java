@@ -0,0 +1,487 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One campus toured by several players at once. Items and unlocked doors are
+ * shared: a cookie one player picks up is gone for everyone. Each location
+ * has its own lock, taken only while its items are read or changed, so
+ * players in different locations never wait for each other and there is no
+ * lock over the whole world.
+ *
+ * A location's items are copied from the frozen template the first time
+ * someone changes them. Taking items is a single check-and-remove under the
+ * location's lock, so when two players grab the last copy exactly one gets
+ * it (the first to reach the lock; the lock is fair) and the other is told
+ * it is gone. Visited locations stay per player: see viewFor().
+ *
+ * Players' turns are carried out in the mailbox of the location they are
+ * in (see LocationMailbox), which also keeps track of who is there and so
+ * who hears about what others do there (see LocationTopics). The
+ * per-location locks still guard the few operations that reach across
+ * locations, such as whereis and restoring a saved game.
+ *
+ * When the campus is reloaded this world is replaced (see migrateTo), but
+ * tours keep using it until their next command moves them over. From the
+ * moment it is replaced it keeps nothing of its own for locations the new
+ * campus still has: each location's items are handed to the new world
+ * under that location's lock, and every later read or change made here
+ * goes to the new world instead, so no change is lost or counted twice and
+ * players on both worlds see one set of items, doors and players.
+ */
+public class SharedWorld {
+
+    /** Live items of one location, guarded by its lock. */
+    private static final class LocationState {
+        final ReentrantLock lock = new ReentrantLock(true);
+        final ItemBag items = new ItemBag();
+        /** Where the items went once this world was replaced; null while they are kept here. */
+        Location movedTo;
+
+        LocationState(Location loc) {
+            for (ItemBag.Stack s : loc.getItemStacks()) items.add(s.getDefinition(), s.getCount());
+        }
+    }
+
+    private final Campus template;
+    /** Locations whose items have been changed since the tour started. */
+    private final ConcurrentHashMap<Location, LocationState> states = new ConcurrentHashMap<>();
+    /** Lowercase item name -> locations that have been given copies of it. */
+    private final ConcurrentHashMap<String, Set<Location>> droppedAt = new ConcurrentHashMap<>();
+    private final Set<Door> unlocked = ConcurrentHashMap.newKeySet();
+    /** Runs the mailboxes: virtual threads where available. */
+    private final ExecutorService executor = VirtualThreads.newExecutor();
+    private final ConcurrentHashMap<Location, LocationMailbox> mailboxes = new ConcurrentHashMap<>();
+    /** Players in each location, changed only from that location's mailbox. */
+    private final LocationTopics topics = new LocationTopics();
+    /** The world that replaced this one, or null while this one is current. */
+    private volatile Successor successor;
+
+    /** The world that replaced this one and how to find things in it. */
+    private static final class Successor {
+        final SharedWorld world;
+        final CampusDiff diff;
+
+        Successor(SharedWorld world, CampusDiff diff) {
+            this.world = world;
+            this.diff = diff;
+        }
+
+        /** The location's counterpart, or null if the new campus does not have it. */
+        Location location(Location loc) {
+            String name = diff.locationName(loc.getName());
+            return (name == null) ? null : world.template.getLocation(name);
+        }
+
+        /** The item's current name; an item the campus lost keeps its old one (copies players left are kept). */
+        String itemName(String name) {
+            String current = diff.itemName(name);
+            return (current == null) ? name : current;
+        }
+
+        ItemDefinition definition(ItemDefinition old) {
+            ItemDefinition def = world.template.getItemDefinition(itemName(old.getName()));
+            return (def == null) ? old : def;
+        }
+
+        /** The door's counterpart, or null if its location or direction is gone. */
+        Door door(Door old) {
+            Location from = location(old.getFrom());
+            if (from == null) return null;
+            for (Door d : from.getDoors()) {
+                if (d.getDirection() == old.getDirection()) return d;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Creates a shared world on a campus.
+     * @param template frozen campus
+     */
+    public SharedWorld(Campus template) {
+        if (template == null || !template.isFrozen())
+            throw new IllegalArgumentException("A shared world needs a frozen campus");
+        this.template = template;
+    }
+
+    /** The campus template this world sits on. */
+    public Campus getTemplate() { return template; }
+
+    /**
+     * Creates one player's view of the world: shared items and doors, own visited locations.
+     * @return world state for one tour
+     */
+    public WorldState viewFor() {
+        return new PlayerView();
+    }
+
+    /**
+     * The mailbox of a location, created on first use.
+     * @param loc location
+     * @return its mailbox
+     */
+    public LocationMailbox mailboxOf(Location loc) {
+        return mailboxes.computeIfAbsent(loc, l -> new LocationMailbox(l, executor));
+    }
+
+    /**
+     * Records a player arriving at a location. Call from that location's mailbox.
+     * @param loc location
+     * @param player arriving player
+     */
+    public void arrived(Location loc, TourSession player) {
+        topics.subscribe(loc, player);
+        Successor s = successor;
+        Location to = (s == null) ? null : s.location(loc);
+        if (to != null) s.world.arrived(to, player);
+    }
+
+    /**
+     * Records a player leaving a location. Call from that location's mailbox.
+     * @param loc location
+     * @param player departing player
+     */
+    public void departed(Location loc, TourSession player) {
+        topics.unsubscribe(loc, player);
+        Successor s = successor;
+        Location to = (s == null) ? null : s.location(loc);
+        if (to != null) s.world.departed(to, player);
+    }
+
+    /**
+     * Players currently at a location.
+     * @param loc location
+     * @return snapshot of the players there
+     */
+    public List<TourSession> playersAt(Location loc) {
+        Successor s = successor;
+        Location to = (s == null) ? null : s.location(loc);
+        return (to != null) ? s.world.playersAt(to) : topics.subscribersOf(loc);
+    }
+
+    /**
+     * Tells the other players at a location what a player did.
+     * @param loc location
+     * @param source player the event is about
+     * @param text message, e.g. "Alex picked up the Cookie."
+     */
+    public void publish(Location loc, TourSession source, String text) {
+        Successor s = successor;
+        Location to = (s == null) ? null : s.location(loc);
+        if (to != null) s.world.publish(to, source, text);
+        else topics.publish(loc, new PlayerEvent(source, text));
+    }
+
+    private LocationState stateFor(Location loc) {
+        return states.computeIfAbsent(loc, LocationState::new);
+    }
+
+    /**
+     * Where a location's items live now that this world has been replaced,
+     * handing them over first if nobody has yet; null while they are kept
+     * here. Call with the location's lock held, or with st null when the
+     * location has never been changed here (so it holds the template's items).
+     */
+    private Location handOver(Location loc, LocationState st) {
+        if (st != null && st.movedTo != null) return st.movedTo;
+        Successor s = successor;
+        Location to = (s == null) ? null : s.location(loc);
+        if (to == null || st == null) return to;
+        s.world.takeOver(loc, st.items, to, s);
+        st.movedTo = to;
+        return to;
+    }
+
+    /** Where a location's items live now (see handOver), taking its lock if it has been changed here. */
+    private Location movedTo(Location loc) {
+        if (successor == null) return null;
+        LocationState st = states.get(loc);
+        if (st == null) return handOver(loc, null);
+        st.lock.lock();
+        try {
+            return handOver(loc, st);
+        } finally {
+            st.lock.unlock();
+        }
+    }
+
+    /**
+     * Number of copies of an item at a location.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @return count, 0 if none
+     */
+    public int itemCount(Location loc, String itemName) {
+        if (loc == null || itemName == null) return 0;
+        Location to = movedTo(loc);
+        if (to != null) return successor.world.itemCount(to, successor.itemName(itemName));
+        LocationState st = states.get(loc);
+        if (st == null) return loc.getItemCount(itemName);
+        st.lock.lock();
+        try {
+            return st.items.count(itemName);
+        } finally {
+            st.lock.unlock();
+        }
+    }
+
+    /**
+     * Definition of an item lying at a location.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @return definition, or null if no copy is there
+     */
+    public ItemDefinition findItem(Location loc, String itemName) {
+        if (loc == null || itemName == null) return null;
+        Location to = movedTo(loc);
+        if (to != null) return successor.world.findItem(to, successor.itemName(itemName));
+        LocationState st = states.get(loc);
+        if (st == null) return loc.findItem(itemName);
+        st.lock.lock();
+        try {
+            return st.items.find(itemName);
+        } finally {
+            st.lock.unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the items lying at a location.
+     * @param loc location
+     * @return read-only stacks
+     */
+    public Collection<ItemBag.Stack> itemStacks(Location loc) {
+        Location to = movedTo(loc);
+        if (to != null) return successor.world.itemStacks(to);
+        LocationState st = states.get(loc);
+        if (st == null) return loc.getItemStacks();
+        ItemBag copy = new ItemBag();
+        st.lock.lock();
+        try {
+            for (ItemBag.Stack s : st.items.stacks()) copy.add(s.getDefinition(), s.getCount());
+        } finally {
+            st.lock.unlock();
+        }
+        return copy.stacks();
+    }
+
+    /**
+     * Puts copies of an item at a location.
+     * @param loc location
+     * @param def item definition
+     * @param count number of copies
+     */
+    public void addItems(Location loc, ItemDefinition def, int count) {
+        if (loc == null || def == null || count < 1) return;
+        LocationState st = stateFor(loc);
+        Location to;
+        st.lock.lock();
+        try {
+            to = handOver(loc, st);
+            if (to == null) st.items.add(def, count);
+        } finally {
+            st.lock.unlock();
+        }
+        if (to != null) successor.world.addItems(to, successor.definition(def), count);
+        else droppedAt.computeIfAbsent(def.getKey(), k -> ConcurrentHashMap.newKeySet()).add(loc);
+    }
+
+    /**
+     * Takes up to count copies of an item from a location, atomically.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @param count copies wanted (ItemBag.ALL for every copy)
+     * @return number of copies taken (0 if another player got there first)
+     */
+    public int removeItems(Location loc, String itemName, int count) {
+        if (loc == null || itemName == null || count < 1) return 0;
+        // nothing to take and nobody has dropped any here: no need to copy the location
+        if (successor == null && !states.containsKey(loc) && loc.getItemCount(itemName) == 0) return 0;
+        LocationState st = stateFor(loc);
+        Location to;
+        st.lock.lock();
+        try {
+            to = handOver(loc, st);
+            if (to == null) return st.items.remove(itemName, count);
+        } finally {
+            st.lock.unlock();
+        }
+        return successor.world.removeItems(to, successor.itemName(itemName), count);
+    }
+
+    /**
+     * Locations holding an item, with counts. Each count is read under its
+     * location's lock; the map as a whole is not one atomic snapshot.
+     * @param itemName item name (case-insensitive)
+     * @return read-only map, empty if the item is nowhere
+     */
+    public Map<Location, Integer> itemLocations(String itemName) {
+        if (itemName == null) return Map.of();
+        Set<Location> candidates = new LinkedHashSet<>(template.getItemLocations(itemName).keySet());
+        Set<Location> dropped = droppedAt.get(itemName.trim().toLowerCase());
+        if (dropped != null) candidates.addAll(dropped);
+        Successor s = successor;
+        if (s != null) {
+            // copies left in the new world, at the locations this campus knows them by
+            for (Location there : s.world.itemLocations(s.itemName(itemName)).keySet()) {
+                Location loc = template.getLocation(there.getName());
+                if (loc != null) candidates.add(loc);
+            }
+        }
+        Map<Location, Integer> out = new LinkedHashMap<>();
+        for (Location loc : candidates) {
+            int n = itemCount(loc, itemName);
+            if (n > 0) out.put(loc, n);
+        }
+        return out;
+    }
+
+    /** True if the door is currently locked. */
+    public boolean isDoorLocked(Door door) {
+        Successor s = successor;
+        Door now = (s == null) ? null : s.door(door);
+        if (now != null) return s.world.isDoorLocked(now);
+        return door.getIsLocked() && !unlocked.contains(door);
+    }
+
+    /** Unlocks a door for every player. */
+    public void unlockDoor(Door door) {
+        if (door == null || !door.getIsLocked()) return;
+        unlocked.add(door);
+        Successor s = successor;
+        Door now = (s == null) ? null : s.door(door);
+        if (now != null) s.world.unlockDoor(now);
+    }
+
+    /** Number of locations whose items differ from the template. */
+    public int changedLocationCount() { return states.size(); }
+
+    /**
+     * Replaces this world with one on a newly loaded campus that carries over
+     * what players have changed here: items taken from or left at each
+     * location (as differences, so edits to the file still show), unlocked
+     * doors and who is where. Each location is handed over under its lock,
+     * and from then on everything done here is done in the new world (see
+     * the class comment), so tours not yet migrated keep playing in the same
+     * world as the rest. Changes at locations that no longer exist stay here
+     * and are dropped when their tours migrate.
+     * @param campus newly loaded, frozen campus
+     * @param diff differences from this world's campus
+     * @return the new world
+     * @throws IllegalStateException if this world has already been replaced
+     */
+    public SharedWorld migrateTo(Campus campus, CampusDiff diff) {
+        if (successor != null) throw new IllegalStateException("This world has already been replaced");
+        SharedWorld next = new SharedWorld(campus);
+        Successor s = new Successor(next, diff);
+        // published before the sweep: a location changed after this either is swept or hands itself over
+        successor = s;
+        for (Map.Entry<Location, LocationState> e : states.entrySet()) {
+            LocationState st = e.getValue();
+            st.lock.lock();
+            try {
+                handOver(e.getKey(), st);
+            } finally {
+                st.lock.unlock();
+            }
+        }
+        for (Door d : unlocked) {
+            Door now = s.door(d);
+            if (now != null) next.unlockDoor(now);
+        }
+        // presence changes only in a location's mailbox, so copying it there cannot miss an arrival or departure
+        for (Location loc : topics.locations()) {
+            Location to = s.location(loc);
+            if (to == null) continue;
+            mailboxOf(loc).tell(() -> {
+                for (TourSession player : topics.subscribersOf(loc)) next.arrived(to, player);
+            });
+        }
+        return next;
+    }
+
+    /**
+     * Takes over one location's changes from the world this one replaced.
+     * Called with the old location's lock held; this world may already be
+     * in use, so the differences are applied under this location's lock.
+     */
+    private void takeOver(Location oldLoc, ItemBag oldItems, Location loc, Successor from) {
+        LocationState now = stateFor(loc);
+        now.lock.lock();
+        try {
+            Set<String> seen = new HashSet<>();
+            for (ItemBag.Stack st : oldItems.stacks()) {
+                seen.add(st.getDefinition().getKey());
+                carryOver(now, loc, from.definition(st.getDefinition()),
+                        st.getCount() - oldLoc.getItemCount(st.getDefinition().getName()));
+            }
+            for (ItemBag.Stack st : oldLoc.getItemStacks()) {
+                if (!seen.contains(st.getDefinition().getKey()))
+                    carryOver(now, loc, from.definition(st.getDefinition()), -st.getCount());
+            }
+        } finally {
+            now.lock.unlock();
+        }
+    }
+
+    /** Applies one item difference carried over from an older world, under the location's lock. */
+    private void carryOver(LocationState st, Location loc, ItemDefinition def, int delta) {
+        if (delta > 0) {
+            st.items.add(def, delta);
+            droppedAt.computeIfAbsent(def.getKey(), k -> ConcurrentHashMap.newKeySet()).add(loc);
+        } else if (delta < 0) {
+            st.items.remove(def, -delta);
+        }
+    }
+
+    /** One player's window on the shared world. */
+    private final class PlayerView implements WorldState {
+        private final Set<Location> visited = new HashSet<>();
+
+        @Override
+        public int itemCount(Location loc, String itemName) { return SharedWorld.this.itemCount(loc, itemName); }
+
+        @Override
+        public ItemDefinition findItem(Location loc, String itemName) { return SharedWorld.this.findItem(loc, itemName); }
+
+        @Override
+        public Collection<ItemBag.Stack> itemStacks(Location loc) { return SharedWorld.this.itemStacks(loc); }
+
+        @Override
+        public void addItems(Location loc, ItemDefinition def, int count) { SharedWorld.this.addItems(loc, def, count); }
+
+        @Override
+        public int removeItems(Location loc, String itemName, int count) {
+            return SharedWorld.this.removeItems(loc, itemName, count);
+        }
+
+        @Override
+        public Map<Location, Integer> itemLocations(String itemName) { return SharedWorld.this.itemLocations(itemName); }
+
+        @Override
+        public boolean isVisited(Location loc) { return visited.contains(loc); }
+
+        @Override
+        public void markVisited(Location loc) {
+            if (loc != null) visited.add(loc);
+        }
+
+        @Override
+        public Collection<Location> visitedLocations() { return Collections.unmodifiableSet(visited); }
+
+        @Override
+        public boolean isDoorLocked(Door door) { return SharedWorld.this.isDoorLocked(door); }
+
+        @Override
+        public void unlockDoor(Door door) { SharedWorld.this.unlockDoor(door); }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Command for "shelter": tells the player how to reach the nearest building.
+ */
+public class ShelterCommand implements UserInputCommand {
+
+    /**
+     * Looks up the nearest indoor location from the current location.
+     * @return directions to shelter, or a note that the player is already inside
+     */
+    @Override
+    public String carryOut() {
+        TourStatus ts = TourStatus.getInstance();
+        Campus campus = ts.getCampus();
+        Location here = ts.getCurrentLocation();
+        if (here == null) return "You're nowhere.";
+        if (campus == null) return "Campus not loaded.";
+
+        if (here.isIndoors()) {
+            return "You're inside " + here.getName() + " and safe from the weather.";
+        }
+        ShelterTable table = campus.getShelterTable();
+        boolean masterKey = ts.getBackpackCount(MovementCommand.MASTER_KEY_NAME) > 0;
+        Location shelter = table.nearestShelterFrom(here, masterKey);
+        if (shelter == null) {
+            return "There is no building you can reach from here.";
+        }
+        int d = table.distanceFrom(here, masterKey);
+        return "Nearest shelter: " + shelter.getName() + ", " + d + (d == 1 ? " move" : " moves")
+                + " away. Head " + ShelterTable.directionName(table.firstStepFrom(here, masterKey)) + ".";
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.List;
+
+/**
+ * Precomputed "nearest building" lookup for every location on campus.
+ * Built once with a multi-source breadth-first search that starts from every
+ * indoor location at the same time and follows doors backwards, so each
+ * location learns how many moves away the closest shelter is and which door
+ * to take first. Lookups are plain array reads.
+ *
+ * Only doors a player can walk through count. Doors that start locked are
+ * left out, and doors into the buildings that need the Master Key (see
+ * MovementCommand.needsMasterKey) count only for a player holding it, so
+ * the table is built twice, once for each. A locked door a tour has since
+ * unlocked is still left out: the route given may then be longer than it
+ * needs to be, but it never runs into a locked door.
+ */
+public class ShelterTable {
+    /** Distance value for locations that cannot reach any building. */
+    public static final int UNREACHABLE = -1;
+
+    /** Routes to shelter for one set of usable doors. */
+    private static final class Routes {
+        /** Moves to the nearest indoor location, by location id (UNREACHABLE if none). */
+        final int[] distance;
+        /** Direction of the first door to take, by location id (0 when indoors or unreachable). */
+        final char[] firstStep;
+        /** Id of the nearest indoor location, by location id (-1 if none). */
+        final int[] shelter;
+
+        Routes(int n) {
+            distance = new int[n];
+            firstStep = new char[n];
+            shelter = new int[n];
+        }
+    }
+
+    /** The campus as the search needs it: flags by location id, and the usable doors. */
+    private static final class Graph {
+        final int n;
+        final boolean[] indoors;
+        final boolean[] keyOnly;
+        final int[] from;
+        final char[] dir;
+        final int[] to;
+
+        Graph(int n, int doors) {
+            this.n = n;
+            indoors = new boolean[n];
+            keyOnly = new boolean[n];
+            from = new int[doors];
+            dir = new char[doors];
+            to = new int[doors];
+        }
+
+        /** Reads the graph from loaded locations, leaving out locked doors and doors off campus. */
+        static Graph of(List<Location> locs) {
+            int n = locs.size();
+            int doors = 0;
+            for (Location l : locs) doors += l.getDoors().size();
+            Graph g = new Graph(n, doors);
+            int k = 0;
+            for (Location l : locs) {
+                g.indoors[l.getId()] = l.isIndoors();
+                g.keyOnly[l.getId()] = MovementCommand.needsMasterKey(l);
+                for (Door d : l.getDoors()) {
+                    if (d.getIsLocked()) continue;
+                    Location to = d.getTo();
+                    if (to == null || to.getId() < 0 || to.getId() >= n) continue;
+                    g.from[k] = l.getId();
+                    g.dir[k] = d.getDirection();
+                    g.to[k++] = to.getId();
+                }
+            }
+            return g.trim(k);
+        }
+
+        /** Reads the graph from a paged campus's directory without paging anything in. */
+        static Graph of(CampusPager pager) {
+            Graph g = new Graph(pager.size(), pager.doorCount());
+            for (int i = 0; i < g.n; i++) {
+                g.indoors[i] = pager.isIndoors(i);
+                g.keyOnly[i] = MovementCommand.needsMasterKey(pager.nameOf(i));
+            }
+            for (int k = 0; k < g.from.length; k++) {
+                int[] d = pager.door(k);
+                g.from[k] = d[0];
+                g.dir[k] = (char) d[1];
+                g.to[k] = d[2];
+            }
+            return g;
+        }
+
+        private Graph trim(int doors) {
+            if (doors == from.length) return this;
+            Graph g = new Graph(n, doors);
+            System.arraycopy(indoors, 0, g.indoors, 0, n);
+            System.arraycopy(keyOnly, 0, g.keyOnly, 0, n);
+            System.arraycopy(from, 0, g.from, 0, doors);
+            System.arraycopy(dir, 0, g.dir, 0, doors);
+            System.arraycopy(to, 0, g.to, 0, doors);
+            return g;
+        }
+    }
+
+    private final Campus campus;
+    private final int size;
+    private final Routes withoutKey;
+    private final Routes withKey;
+
+    private ShelterTable(Campus campus, int size, Routes withoutKey, Routes withKey) {
+        this.campus = campus;
+        this.size = size;
+        this.withoutKey = withoutKey;
+        this.withKey = withKey;
+    }
+
+    /**
+     * Builds the table for a campus in O(locations + doors). A paged campus
+     * is read from its directory, so nothing is paged in.
+     * @param campus campus whose locations have been assigned ids
+     * @return shelter table
+     */
+    public static ShelterTable build(Campus campus) {
+        CampusPager pager = campus.getPager();
+        Graph g = (pager != null) ? Graph.of(pager) : Graph.of(campus.getLocationList());
+        return new ShelterTable(campus, g.n, search(g, false), search(g, true));
+    }
+
+    /** Runs the backwards search over the doors usable with or without the Master Key. */
+    private static Routes search(Graph g, boolean masterKey) {
+        int n = g.n;
+
+        // Reverse adjacency in compressed form: for each location, the doors leading into it.
+        int[] inCount = new int[n + 1];
+        for (int k = 0; k < g.to.length; k++) {
+            if (masterKey || !g.keyOnly[g.to[k]]) inCount[g.to[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) inCount[i + 1] += inCount[i];
+        int[] inFrom = new int[inCount[n]];
+        char[] inDir = new char[inCount[n]];
+        int[] fill = new int[n];
+        for (int k = 0; k < g.to.length; k++) {
+            int to = g.to[k];
+            if (!masterKey && g.keyOnly[to]) continue;
+            int slot = inCount[to] + fill[to]++;
+            inFrom[slot] = g.from[k];
+            inDir[slot] = g.dir[k];
+        }
+
+        Routes r = new Routes(n);
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (g.indoors[i]) {
+                r.distance[i] = 0;
+                r.shelter[i] = i;
+                queue[tail++] = i;
+            } else {
+                r.distance[i] = UNREACHABLE;
+                r.shelter[i] = -1;
+            }
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = inCount[v]; k < inCount[v + 1]; k++) {
+                int u = inFrom[k];
+                if (r.distance[u] != UNREACHABLE) continue;
+                r.distance[u] = r.distance[v] + 1;
+                r.firstStep[u] = inDir[k];
+                r.shelter[u] = r.shelter[v];
+                queue[tail++] = u;
+            }
+        }
+        return r;
+    }
+
+    private boolean covers(Location loc) {
+        return loc != null && loc.getId() >= 0 && loc.getId() < size && campus.owns(loc);
+    }
+
+    private Routes routes(boolean masterKey) { return masterKey ? withKey : withoutKey; }
+
+    /**
+     * Number of moves from a location to the nearest building.
+     * @param loc location
+     * @param masterKey true if the player holds the Master Key
+     * @return moves (0 if already indoors), or UNREACHABLE
+     */
+    public int distanceFrom(Location loc, boolean masterKey) {
+        return covers(loc) ? routes(masterKey).distance[loc.getId()] : UNREACHABLE;
+    }
+
+    /**
+     * Direction of the first door to take towards the nearest building.
+     * @param loc location
+     * @param masterKey true if the player holds the Master Key
+     * @return 'n','s','e','w', or 0 when indoors or no building is reachable
+     */
+    public char firstStepFrom(Location loc, boolean masterKey) {
+        return covers(loc) ? routes(masterKey).firstStep[loc.getId()] : 0;
+    }
+
+    /**
+     * The nearest building reachable from a location.
+     * @param loc location
+     * @param masterKey true if the player holds the Master Key
+     * @return nearest indoor location, or null if none is reachable
+     */
+    public Location nearestShelterFrom(Location loc, boolean masterKey) {
+        if (!covers(loc)) return null;
+        int id = routes(masterKey).shelter[loc.getId()];
+        return id < 0 ? null : campus.locationAt(id);
+    }
+
+    /**
+     * Formats a short hint such as "nearest shelter: 2 moves north".
+     * @param loc location
+     * @param masterKey true if the player holds the Master Key
+     * @return hint text, or null when indoors or no building is reachable
+     */
+    public String describeFrom(Location loc, boolean masterKey) {
+        int d = distanceFrom(loc, masterKey);
+        if (d <= 0) return null;
+        return "nearest shelter: " + d + (d == 1 ? " move " : " moves ") + directionName(firstStepFrom(loc, masterKey));
+    }
+
+    /**
+     * Full name of a door direction.
+     * @param dir 'n','s','e','w'
+     * @return "north", "south", "east", "west" (or "?")
+     */
+    public static String directionName(char dir) {
+        switch (Character.toLowerCase(dir)) {
+            case 'n': return "north";
+            case 's': return "south";
+            case 'e': return "east";
+            case 'w': return "west";
+            default: return "?";
+        }
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Admin command "stats": shows how many times each command and background
+ * phase has run and how long it took (see Metrics), across every tour in
+ * the process. Only parsed for an admin tour (see TourSession.setAdmin);
+ * operators of a server read the same figures over JMX.
+ */
+public class StatsCommand implements UserInputCommand {
+
+    /**
+     * Formats the current metrics.
+     * @return the metrics report
+     */
+    @Override
+    public String carryOut() {
+        return Metrics.report();
+    }
+}
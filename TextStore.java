@@ -0,0 +1,210 @@
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Off-heap storage for long display text: location descriptions, item
+ * messages and dialogue. Text is UTF-8 encoded into direct (non-heap) buffers
+ * when a campus is loaded, and the owning objects keep only a long handle.
+ * A string is decoded again only when it is about to be shown; a small cache
+ * keeps recently shown ones decoded.
+ *
+ * All campuses share the default store, and text already stored (found by
+ * a hash of its bytes) is not stored again: campuses that repeat each
+ * other's descriptions, messages and dialogue, such as day and night
+ * editions of one campus, cost only the text that differs.
+ *
+ * Each piece of text counts the objects holding it and is released when the
+ * last of them is garbage collected, for instance when every tour has left
+ * a reloaded campus's old version. Space inside a buffer is not reused, but
+ * a buffer is given back once all the text in it has been released.
+ *
+ * Only storing and releasing text take the store's lock. Reading needs no
+ * lock: stored bytes never change, buffers are only ever added or dropped
+ * whole, and the cache is an array of immutable entries.
+ */
+public final class TextStore {
+    /** Handle standing for a null string. */
+    public static final long NULL_REF = -1L;
+    /** Handle standing for the empty string. */
+    public static final long EMPTY_REF = -2L;
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    /** Record header: [int length][int owners]. */
+    private static final int HEADER = 8;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final TextStore DEFAULT = new TextStore(DEFAULT_CACHE_SIZE);
+
+    /** A decoded string and the handle it came from. */
+    private static final class Decoded {
+        final long ref;
+        final String text;
+
+        Decoded(long ref, String text) {
+            this.ref = ref;
+            this.text = text;
+        }
+    }
+
+    /** Direct buffers of records, by chunk number; null once released. Replaced, never changed in place. */
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    /** Records still held in each chunk; guarded by this. */
+    private int[] live = new int[0];
+    /** Chunk being filled and where its free space starts, -1 before the first; guarded by this. */
+    private int current = -1;
+    private int position;
+    private long bytesStored;
+    /** Bytes not stored because the same text was already there. */
+    private long bytesShared;
+    /** Handle of stored text by content hash; when two texts share a hash only the first is found. */
+    private final HashMap<Long, Long> byHash = new HashMap<>();
+    /**
+     * Recently decoded strings, one slot per handle (by hash), read and
+     * replaced without locking; entries are immutable, so a racing reader
+     * sees either the old entry or the new one. Handles are never reissued,
+     * so an entry can only ever be right or miss.
+     */
+    private final Decoded[] cache;
+
+    /**
+     * Creates an empty store.
+     * @param cacheSize number of decoded strings to keep on the heap (rounded up to a power of two)
+     */
+    public TextStore(int cacheSize) {
+        this.cache = new Decoded[Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1];
+    }
+
+    /** The store shared by all campuses. */
+    public static TextStore getDefault() { return DEFAULT; }
+
+    /**
+     * Encodes and stores a string for an object that shows it, or finds it if
+     * the same text is already stored. The text is held until every owner it
+     * was stored for has been garbage collected.
+     * @param owner object keeping the handle (e.g. the Location described)
+     * @param s text (may be null or empty)
+     * @return handle for get()
+     */
+    public long put(Object owner, String s) {
+        long ref = store(s);
+        if (ref >= 0) CLEANER.register(owner, () -> release(ref));
+        return ref;
+    }
+
+    private synchronized long store(String s) {
+        if (s == null) return NULL_REF;
+        if (s.isEmpty()) return EMPTY_REF;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int need = HEADER + bytes.length;
+        long hash = hash(bytes);
+        Long found = byHash.get(hash);
+        if (found != null && sameBytes(found, bytes)) {
+            ByteBuffer chunk = chunks[(int) (found >>> 32)];
+            int offset = (int) (long) found;
+            chunk.putInt(offset + 4, chunk.getInt(offset + 4) + 1);
+            bytesShared += need;
+            return found;
+        }
+        if (current < 0 || chunks[current].capacity() - position < need) startChunk(need);
+        ByteBuffer chunk = chunks[current];
+        int offset = position;
+        chunk.putInt(offset, bytes.length).putInt(offset + 4, 1).put(offset + HEADER, bytes);
+        position += need;
+        live[current]++;
+        bytesStored += need;
+        long ref = ((long) current << 32) | offset;
+        byHash.putIfAbsent(hash, ref);
+        return ref;
+    }
+
+    /** Starts a new chunk to fill, giving back the one being filled if nothing in it is held any more. */
+    private void startChunk(int need) {
+        int n = chunks.length;
+        ByteBuffer[] grown = new ByteBuffer[n + 1];
+        System.arraycopy(chunks, 0, grown, 0, n);
+        grown[n] = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, need));
+        int[] counts = new int[n + 1];
+        System.arraycopy(live, 0, counts, 0, n);
+        if (current >= 0 && counts[current] == 0) grown[current] = null;
+        live = counts;
+        current = n;
+        position = 0;
+        chunks = grown;
+    }
+
+    /** Drops one owner of a record, and the record once it has none. */
+    private synchronized void release(long ref) {
+        int c = (int) (ref >>> 32);
+        int offset = (int) ref;
+        ByteBuffer chunk = chunks[c];
+        int owners = chunk.getInt(offset + 4) - 1;
+        chunk.putInt(offset + 4, owners);
+        if (owners > 0) return;
+        int length = chunk.getInt(offset);
+        byte[] bytes = new byte[length];
+        chunk.get(offset + HEADER, bytes);
+        byHash.remove(hash(bytes), ref);
+        bytesStored -= HEADER + length;
+        if (--live[c] == 0 && c != current) {
+            ByteBuffer[] fewer = chunks.clone();
+            fewer[c] = null;
+            chunks = fewer;
+        }
+    }
+
+    /**
+     * Returns the string behind a handle, decoding it if it is not cached.
+     * @param owner object the handle was stored for, kept reachable (and so
+     *              the text kept stored) until the text has been read
+     * @param ref handle from put()
+     * @return the stored text
+     */
+    public String get(Object owner, long ref) {
+        if (ref == NULL_REF) return null;
+        if (ref == EMPTY_REF) return "";
+        int slot = (int) (ref ^ (ref >>> 29)) & (cache.length - 1);
+        Decoded d = cache[slot];
+        if (d != null && d.ref == ref) return d.text;
+        try {
+            ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+            int offset = (int) ref;
+            byte[] bytes = new byte[chunk.getInt(offset)];
+            chunk.get(offset + HEADER, bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            cache[slot] = new Decoded(ref, s);
+            return s;
+        } finally {
+            Reference.reachabilityFence(owner);
+        }
+    }
+
+    /** Encoded bytes of the text currently held off-heap. */
+    public synchronized long getBytesStored() { return bytesStored; }
+
+    /** Encoded bytes that would have been stored again had repeated text not been shared. */
+    public synchronized long getBytesShared() { return bytesShared; }
+
+    /** Whether the text behind a handle is exactly these bytes. */
+    private boolean sameBytes(long ref, byte[] bytes) {
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        if (chunk.getInt(offset) != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(offset + HEADER + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    /** 64-bit FNV-1a. */
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
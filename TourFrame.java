@@ -0,0 +1,88 @@
+import java.io.IOException;
+
+/**
+ * One turn of a tour as a spectator sees it: what the player typed (nothing
+ * for a turn that passed on the clock), what the command answered, what the
+ * end of the turn brought (weather and teleport notices, items vanishing)
+ * and whether the player moved. Frames are numbered per tour; a spectator
+ * too slow to keep up is sent fewer frames, and the skipped count on the
+ * next one says how many it missed.
+ */
+public class TourFrame {
+    private final long sequence;
+    private final String player;
+    private final String input;
+    private final String result;
+    private final String notices;
+    private final String from;
+    private final String to;
+    private final boolean over;
+    private final int skipped;
+
+    /**
+     * Creates a frame.
+     * @param sequence number of the frame within its tour
+     * @param player player name
+     * @param input what the player typed, or null for a turn on the clock
+     * @param result what the command answered ("" for a turn on the clock)
+     * @param notices end-of-turn notices, "" if none
+     * @param from location at the start of the turn
+     * @param to location at the end of the turn
+     * @param over whether the tour has ended
+     */
+    public TourFrame(long sequence, String player, String input, String result, String notices,
+                     String from, String to, boolean over) {
+        this(sequence, player, input, result, notices, from, to, over, 0);
+    }
+
+    private TourFrame(long sequence, String player, String input, String result, String notices,
+                      String from, String to, boolean over, int skipped) {
+        this.sequence = sequence;
+        this.player = player;
+        this.input = input;
+        this.result = result;
+        this.notices = notices;
+        this.from = from;
+        this.to = to;
+        this.over = over;
+        this.skipped = skipped;
+    }
+
+    /**
+     * The same frame, saying how many frames before it the spectator missed.
+     * @param skipped frames dropped
+     * @return the frame
+     */
+    public TourFrame withSkipped(int skipped) {
+        return new TourFrame(sequence, player, input, result, notices, from, to, over, skipped);
+    }
+
+    public long getSequence() { return sequence; }
+    public String getPlayer() { return player; }
+    public String getInput() { return input; }
+    public String getResult() { return result; }
+    public String getNotices() { return notices; }
+    public String getFrom() { return from; }
+    public String getTo() { return to; }
+    public boolean isOver() { return over; }
+    public int getSkipped() { return skipped; }
+
+    /** True if the player ended the turn somewhere else. */
+    public boolean moved() { return !from.equals(to); }
+
+    /**
+     * Writes the frame as a JSON object.
+     * @param json destination
+     */
+    public void writeJson(JsonWriter json) throws IOException {
+        json.beginObject().name("sequence").value(sequence).name("player").value(player)
+                .name("input").value(input).name("result").value(result).name("notices").value(notices)
+                .name("from").value(from).name("to").value(to).name("moved").value(moved())
+                .name("over").value(over).name("skipped").value(skipped).endObject();
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + player + (input == null ? " (clock)" : " > " + input) + " @ " + to;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Hears about what a tour does to the world around it, so others can be
+ * told (e.g. players sharing a location). All methods do nothing by default.
+ */
+public interface TourListener {
+    /** Listener that ignores everything. */
+    TourListener NONE = new TourListener() { };
+
+    /**
+     * Items were picked up.
+     * @param loc where they were picked up
+     * @param def item definition
+     * @param count number of copies
+     */
+    default void pickedUp(Location loc, ItemDefinition def, int count) { }
+
+    /**
+     * Items were dropped.
+     * @param loc where they were dropped
+     * @param def item definition
+     * @param count number of copies
+     */
+    default void dropped(Location loc, ItemDefinition def, int count) { }
+
+    /**
+     * The player walked through a door.
+     * @param from location left
+     * @param to location entered
+     * @param direction 'n', 's', 'e' or 'w'
+     */
+    default void moved(Location from, Location to, char direction) { }
+
+    /**
+     * The player was teleported.
+     * @param from location left
+     * @param to location entered
+     */
+    default void teleported(Location from, Location to) { }
+}
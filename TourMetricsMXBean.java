@@ -0,0 +1,25 @@
+import java.util.Map;
+
+/**
+ * Management view of the tour's timing metrics (see Metrics), registered
+ * as "TourUMW:type=Metrics".
+ */
+public interface TourMetricsMXBean {
+    /** Seconds since the metrics were started or last reset. */
+    long getUptimeSeconds();
+
+    /** Number of times each timed operation ran, by name. */
+    Map<String, Long> getCounts();
+
+    /** 99th percentile duration of each timed operation in microseconds, by name. */
+    Map<String, Long> getP99Micros();
+
+    /** Named event counters, by name. */
+    Map<String, Long> getCounters();
+
+    /** The same report as the stats command. */
+    String report();
+
+    /** Clears every timer and counter. */
+    void reset();
+}
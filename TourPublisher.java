@@ -0,0 +1,171 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a tour's turns to spectators as TourFrames, following the
+ * java.util.concurrent.Flow rules: a spectator gets only as many frames as
+ * it has asked for, one call at a time. Publishing never waits for a
+ * spectator. Each one has a small buffer; when a slow spectator's buffer is
+ * full the oldest frame is dropped, and the next frame it gets says how
+ * many it skipped. The player's turns run at full speed however many
+ * spectators are watching or how slow they are.
+ *
+ * Frames are handed to spectators on a shared executor (see
+ * VirtualThreads), never on the thread that published them.
+ */
+public class TourPublisher implements Flow.Publisher<TourFrame>, AutoCloseable {
+    /** Frames buffered per spectator before the oldest is dropped. */
+    public static final int BUFFER = 16;
+
+    private static final Executor DELIVERY = VirtualThreads.newExecutor();
+
+    private final CopyOnWriteArrayList<Spectator> spectators = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean closed;
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TourFrame> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        Spectator s = new Spectator(subscriber);
+        spectators.add(s);
+        // a spectator arriving after close() still gets onSubscribe, then onComplete
+        if (closed) s.complete();
+        s.schedule();
+    }
+
+    /**
+     * Sends a turn to every spectator, numbering it.
+     * @param player player name
+     * @param input what the player typed, or null for a turn on the clock
+     * @param result what the command answered
+     * @param notices end-of-turn notices
+     * @param from location at the start of the turn
+     * @param to location at the end of the turn
+     * @param over whether the tour has ended
+     */
+    public void publish(String player, String input, String result, String notices,
+                        Location from, Location to, boolean over) {
+        if (closed || spectators.isEmpty()) return;
+        TourFrame frame = new TourFrame(sequence.incrementAndGet(), player, input, result, notices,
+                from.getName(), to.getName(), over);
+        for (Spectator s : spectators) s.offer(frame);
+    }
+
+    /** Number of spectators watching. */
+    public int spectatorCount() { return spectators.size(); }
+
+    /** Ends the stream: every spectator gets what is buffered, then onComplete. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Spectator s : spectators) s.complete();
+    }
+
+    /** One spectator's subscription: its buffer, its demand, and the loop that delivers to it. */
+    private final class Spectator implements Flow.Subscription {
+        private final Flow.Subscriber<? super TourFrame> subscriber;
+        /** Guarded by this. */
+        private final ArrayDeque<TourFrame> buffer = new ArrayDeque<>();
+        /** Frames dropped since the last one delivered; guarded by this. */
+        private int dropped;
+        private final AtomicLong demand = new AtomicLong();
+        /** Reasons to run the delivery loop; the loop runs while this is above zero. */
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean complete;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        /** Touched only by the delivery loop. */
+        private boolean subscribed;
+
+        Spectator(Flow.Subscriber<? super TourFrame> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(TourFrame frame) {
+            synchronized (this) {
+                if (buffer.size() == BUFFER) {
+                    buffer.poll();
+                    dropped++;
+                }
+                buffer.add(frame);
+            }
+            schedule();
+        }
+
+        void complete() {
+            complete = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Spectators must request a positive number of frames, not " + n);
+            } else {
+                // add without overflowing: Long.MAX_VALUE means "as many as there are"
+                demand.getAndUpdate(d -> (d + n < 0) ? Long.MAX_VALUE : d + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            spectators.remove(this);
+        }
+
+        void schedule() {
+            if (work.getAndIncrement() == 0) DELIVERY.execute(this::deliver);
+        }
+
+        /** Runs on the delivery executor, never in two places at once for the same spectator. */
+        private void deliver() {
+            int missed = 1;
+            do {
+                try {
+                    deliverWaiting();
+                } catch (RuntimeException e) {
+                    // a subscriber that throws has broken the contract; stop sending it anything
+                    cancel();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliverWaiting() {
+            if (cancelled) return;
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            while (!cancelled && error == null && demand.get() > 0) {
+                TourFrame frame;
+                int skipped;
+                synchronized (this) {
+                    frame = buffer.poll();
+                    skipped = dropped;
+                    if (frame != null) dropped = 0;
+                }
+                if (frame == null) break;
+                if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                subscriber.onNext(skipped > 0 ? frame.withSkipped(skipped) : frame);
+            }
+            if (cancelled) return;
+            if (error != null) {
+                cancel();
+                subscriber.onError(error);
+            } else if (complete && isEmpty()) {
+                cancel();
+                subscriber.onComplete();
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return buffer.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The random source of one tour: where teleports land and which weather
+ * comes next. Each tour has its own generator, so tours running on many
+ * threads never contend on a shared seed. The generator is fully described
+ * by its seed and the number of numbers drawn so far; a saved tour records
+ * both, and one read back draws exactly what the original would have.
+ * The underlying 32-bit numbers are those of SplittableRandom.nextInt()
+ * seeded the same way, computed here so that the position can be set
+ * directly: restoring a generator, as undo does every time, is O(1) however
+ * much it has drawn. nextInt(bound) scales one of them into range with a
+ * multiply and shift rather than SplittableRandom's rejection sampling, so
+ * its bounded draws, and with them teleports and weather, differ from
+ * SplittableRandom's.
+ *
+ * Like the rest of a tour, a TourRandom is used by one thread at a time.
+ */
+public class TourRandom {
+    /** SplittableRandom's increment for a generator made from a seed. */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long draws;
+
+    /**
+     * Creates a generator with a fresh seed.
+     */
+    public TourRandom() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates a generator with a given seed.
+     * @param seed seed
+     */
+    public TourRandom(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Recreates a generator that has already drawn some numbers.
+     * @param seed seed it was created with
+     * @param draws numbers it had drawn
+     * @return generator in the same state
+     */
+    public static TourRandom restore(long seed, long draws) {
+        if (draws < 0) throw new IllegalArgumentException("Negative draw count: " + draws);
+        TourRandom r = new TourRandom(seed);
+        r.draws = draws;
+        return r;
+    }
+
+    /**
+     * Draws a number in [0, bound).
+     * @param bound upper bound, positive
+     * @return the number
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("Bound must be positive: " + bound);
+        draws++;
+        // one 32-bit number per draw keeps the draw count a faithful replay position
+        return (int) (((nextInt() & 0xffffffffL) * bound) >>> 32);
+    }
+
+    /** SplittableRandom.nextInt(): the draws-th step of its sequence, mixed down to 32 bits. */
+    private int nextInt() {
+        long z = seed + draws * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    public long getSeed() { return seed; }
+    public long getDraws() { return draws; }
+}
@@ -0,0 +1,428 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+
+/**
+ * Serves tours over HTTP with JSON bodies, for web and kiosk front ends.
+ * Runs on the JDK's built-in server; each request is handled on its own
+ * virtual thread (see VirtualThreads) and connections are kept alive between
+ * requests. Tours live in a SessionRegistry and commands go through the same
+ * TourSession.handle and UserInputCommand classes as the console.
+ *
+ * <pre>
+ * POST   /tours                 {"player": "Sam", "campus": "umw_night", "output": "compact"}
+ *                               starts a tour (campus optional, see CampusRegistry; compact
+ *                               output describes places seen before by what changed, see CompactView)
+ * GET    /tours/{id}            where the player is: description, items, doors, people
+ * POST   /tours/{id}/commands   {"input": "pickup cookie"}  (or the command as plain text;
+ *                               several separated by ";" or lines run as consecutive turns)
+ * GET    /tours/{id}/backpack   what the player carries
+ * GET    /tours/{id}/stream     the tour's turns as they happen, including those that pass
+ *                               on the clock with --realtime (server-sent events)
+ * POST   /tours/{id}/save       saves the tour with the save command
+ * POST   /tours/{id}/load       loads it back with the load command
+ * DELETE /tours/{id}            ends the tour
+ * </pre>
+ * Errors come back as {"error": "..."} with a 4xx or 5xx status.
+ */
+public class TourServer implements AutoCloseable {
+    /** Largest request body read. */
+    private static final int MAX_BODY = 64 * 1024;
+
+    private final SessionRegistry registry;
+    /** Campuses a tour may ask for, or null if tours are all of the registry's campus. */
+    private final CampusRegistry campuses;
+    private final Path saveDir;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts serving.
+     * @param registry tours to serve
+     * @param port port to listen on (0 for any free port)
+     * @param saveDir directory for saved tours
+     * @throws IOException if the port or directory cannot be used
+     */
+    public TourServer(SessionRegistry registry, int port, Path saveDir) throws IOException {
+        this(registry, null, port, saveDir);
+    }
+
+    /**
+     * Starts serving tours of several campuses.
+     * @param registry tours to serve
+     * @param campuses campuses a new tour may pick, or null for the registry's campus only
+     * @param port port to listen on (0 for any free port)
+     * @param saveDir directory for saved tours
+     * @throws IOException if the port or directory cannot be used
+     */
+    public TourServer(SessionRegistry registry, CampusRegistry campuses, int port, Path saveDir) throws IOException {
+        this.registry = registry;
+        this.campuses = campuses;
+        this.saveDir = Files.createDirectories(saveDir);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = VirtualThreads.newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/tours", this::handle);
+        server.start();
+    }
+
+    /** Port the server listens on. */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /** Stops accepting requests, letting those in progress finish for up to a second. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            route(ex);
+        } catch (IllegalArgumentException e) {
+            String message = String.valueOf(e.getMessage());
+            error(ex, message.startsWith("No tour") ? 404 : 400, message);
+        } catch (RuntimeException e) {
+            error(ex, 500, String.valueOf(e));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void route(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        // "/tours/abc/commands" -> ["", "tours", "abc", "commands"]
+        String[] parts = ex.getRequestURI().getPath().split("/");
+        if (parts.length < 2 || !parts[1].equals("tours") || parts.length > 4)
+            throw new IllegalArgumentException("Unknown path " + ex.getRequestURI().getPath());
+        if (parts.length == 2) {
+            if (!method.equals("POST")) throw new IllegalArgumentException(method + " not allowed on /tours");
+            createTour(ex);
+            return;
+        }
+        String id = parts[2];
+        String action = (parts.length > 3) ? parts[3] : "";
+        switch (method + " " + action) {
+            case "GET ": location(ex, id); break;
+            case "DELETE ":
+                if (!registry.contains(id)) throw new IllegalArgumentException("No tour with id " + id);
+                registry.close(id);
+                ex.sendResponseHeaders(204, -1);
+                break;
+            case "POST commands": command(ex, id); break;
+            case "GET backpack": backpack(ex, id); break;
+            case "GET stream": stream(ex, id); break;
+            case "POST save": saveOrLoad(ex, id, true); break;
+            case "POST load": saveOrLoad(ex, id, false); break;
+            default: throw new IllegalArgumentException(method + " not allowed on " + ex.getRequestURI().getPath());
+        }
+    }
+
+    private void createTour(HttpExchange ex) throws IOException {
+        Map<String, String> body = readBody(ex);
+        String player = body.get("player");
+        String campus = body.get("campus");
+        boolean compact = "compact".equalsIgnoreCase(body.get("output"));
+        player = (player == null || player.isBlank()) ? "Visitor" : player.trim();
+        String id;
+        if (campus == null || campus.isBlank()) {
+            id = registry.open(player);
+        } else {
+            WorldVersion v = (campuses == null) ? null : campuses.get(campus);
+            if (v == null) throw new IllegalArgumentException("No campus named " + campus);
+            id = registry.open(player, v);
+        }
+        String text = registry.withSession(id, s -> {
+            s.getStatus().setCompact(compact);
+            return s.describeStart();
+        });
+        ex.getResponseHeaders().set("Location", "/tours/" + id);
+        try (Writer w = respond(ex, 201)) {
+            new JsonWriter(w).beginObject().name("id").value(id).name("text").value(text).endObject();
+        }
+    }
+
+    private void command(HttpExchange ex, String id) throws IOException {
+        String input = readBody(ex).get("input");
+        if (input == null) throw new IllegalArgumentException("No input");
+        String[] where = new String[1];
+        boolean[] over = new boolean[1];
+        String output = registry.withSession(id, s -> {
+            String out = s.handle(input);
+            where[0] = s.getStatus().getCurrentLocation().getName();
+            over[0] = s.isOver();
+            return out;
+        });
+        try (Writer w = respond(ex, 200)) {
+            new JsonWriter(w).beginObject().name("output").value(output).name("location").value(where[0])
+                    .name("over").value(over[0]).endObject();
+        }
+    }
+
+    /** What a player at a location sees, gathered under the tour's lock and written out after. */
+    private static final class View {
+        String name;
+        String description;
+        boolean indoors;
+        boolean over;
+        List<ItemBag.Stack> items;
+        List<Door> doors;
+        List<Boolean> locked = new ArrayList<>();
+        List<String> people = new ArrayList<>();
+    }
+
+    private void location(HttpExchange ex, String id) throws IOException {
+        View v = registry.withSession(id, s -> {
+            TourStatus ts = s.getStatus();
+            Location here = ts.getCurrentLocation();
+            View view = new View();
+            view.name = here.getName();
+            view.description = here.getDescription();
+            view.indoors = here.isIndoors();
+            view.over = s.isOver();
+            view.items = new ArrayList<>(ts.getWorld().itemStacks(here));
+            view.doors = new ArrayList<>(here.getDoors());
+            for (Door d : view.doors) view.locked.add(ts.getWorld().isDoorLocked(d));
+            for (Person p : ts.getCampus().getPeopleAtLocation(here.getName())) view.people.add(p.getName());
+            return view;
+        });
+        try (Writer w = respond(ex, 200)) {
+            JsonWriter json = new JsonWriter(w);
+            json.beginObject().name("location").value(v.name).name("description").value(v.description)
+                    .name("indoors").value(v.indoors).name("over").value(v.over);
+            json.name("items");
+            stacks(json, v.items);
+            json.name("doors").beginArray();
+            for (int i = 0; i < v.doors.size(); i++) {
+                Door d = v.doors.get(i);
+                json.beginObject().name("direction").value(String.valueOf(d.getDirection()))
+                        .name("to").value(d.getToName())
+                        .name("locked").value(v.locked.get(i)).endObject();
+            }
+            json.endArray().name("people").beginArray();
+            for (String p : v.people) json.value(p);
+            json.endArray().endObject();
+        }
+    }
+
+    private void backpack(HttpExchange ex, String id) throws IOException {
+        List<ItemBag.Stack> items = registry.withSession(id, s -> new ArrayList<>(s.getStatus().getBackpack().stacks()));
+        try (Writer w = respond(ex, 200)) {
+            JsonWriter json = new JsonWriter(w);
+            json.beginObject().name("items");
+            stacks(json, items);
+            json.endObject();
+        }
+    }
+
+    /**
+     * Streams a tour's turns as server-sent events, one TourFrame per event,
+     * until the tour ends or the spectator goes away. A frame is asked for only
+     * after the previous one has been written to the connection, so a slow
+     * connection makes the spectator skip frames instead of queueing them.
+     */
+    private void stream(HttpExchange ex, String id) throws IOException {
+        Flow.Publisher<TourFrame> tour = registry.spectate(id);
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+        Writer w = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8));
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        tour.subscribe(new Flow.Subscriber<TourFrame>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(TourFrame frame) {
+                try {
+                    w.write("id: " + frame.getSequence() + "\ndata: ");
+                    frame.writeJson(new JsonWriter(w));
+                    w.write("\n\n");
+                    w.flush();
+                    subscription.request(1);
+                } catch (IOException e) {
+                    // the spectator went away
+                    subscription.cancel();
+                    done.complete(null);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) { done.complete(null); }
+
+            @Override
+            public void onComplete() { done.complete(null); }
+        });
+        done.join();
+        try {
+            w.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    private static void stacks(JsonWriter json, List<ItemBag.Stack> stacks) throws IOException {
+        json.beginArray();
+        for (ItemBag.Stack st : stacks) {
+            json.beginObject().name("name").value(st.getDefinition().getName()).name("count").value(st.getCount()).endObject();
+        }
+        json.endArray();
+    }
+
+    private void saveOrLoad(HttpExchange ex, String id, boolean save) throws IOException {
+        if (!registry.contains(id)) throw new IllegalArgumentException("No tour with id " + id);
+        String file = saveDir.resolve(id + ".txt").toString();
+        UserInputCommand cmd = save ? new SaveCommand(file) : new LoadCommand(file);
+        String output = registry.withSession(id, s -> s.getStatus().runAs(cmd::carryOut));
+        try (Writer w = respond(ex, 200)) {
+            new JsonWriter(w).beginObject().name("output").value(output).endObject();
+        }
+    }
+
+    private static void error(HttpExchange ex, int status, String message) throws IOException {
+        if (ex.getResponseCode() != -1) return; // too late, the headers are out
+        try (Writer w = respond(ex, status)) {
+            new JsonWriter(w).beginObject().name("error").value(message).endObject();
+        }
+    }
+
+    /** Starts a chunked JSON response and returns a writer for its body. */
+    private static Writer respond(HttpExchange ex, int status) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, 0);
+        return new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a request body: a flat JSON object of strings, or plain text taken as the "input" member.
+     * @return members of the body (empty if there is none)
+     */
+    private static Map<String, String> readBody(HttpExchange ex) throws IOException {
+        byte[] bytes;
+        try (InputStream in = ex.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY + 1);
+        }
+        if (bytes.length > MAX_BODY) throw new IllegalArgumentException("Request body too large");
+        String body = new String(bytes, StandardCharsets.UTF_8).trim();
+        Map<String, String> members = new HashMap<>();
+        if (body.isEmpty()) return members;
+        if (!body.startsWith("{")) {
+            members.put("input", body);
+            return members;
+        }
+        new FlatJson(body, members).object();
+        return members;
+    }
+
+    /** Parses {"name": "value", ...} with string, number, boolean or null values; nothing nested. */
+    private static final class FlatJson {
+        private final String s;
+        private final Map<String, String> into;
+        private int i;
+
+        FlatJson(String s, Map<String, String> into) {
+            this.s = s;
+            this.into = into;
+        }
+
+        void object() {
+            expect('{');
+            if (peek() == '}') {
+                i++;
+                return;
+            }
+            do {
+                String name = string();
+                expect(':');
+                into.put(name, value());
+            } while (next(',', '}') == ',');
+            if (peek() != 0) throw bad("trailing text");
+        }
+
+        private String value() {
+            char c = peek();
+            if (c == '"') return string();
+            int start = i;
+            while (i < s.length() && ",} \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+            String word = s.substring(start, i);
+            if (word.equals("null")) return null;
+            if (word.isEmpty() || c == '{' || c == '[') throw bad("only strings, numbers and booleans are accepted");
+            return word;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (i >= s.length()) throw bad("unterminated string");
+                char c = s.charAt(i++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (i >= s.length()) throw bad("unterminated string");
+                char e = s.charAt(i++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 > s.length()) throw bad("bad \\u escape");
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw bad("bad \\u escape");
+                        }
+                        i += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw bad("expected '" + c + "'");
+            i++;
+        }
+
+        private char next(char a, char b) {
+            char c = peek();
+            if (c != a && c != b) throw bad("expected '" + a + "' or '" + b + "'");
+            i++;
+            return c;
+        }
+
+        /** Next character after any whitespace, or 0 at the end. */
+        private char peek() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return (i < s.length()) ? s.charAt(i) : 0;
+        }
+
+        private IllegalArgumentException bad(String why) {
+            return new IllegalArgumentException("Bad JSON at " + i + ": " + why);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One player's tour: their TourStatus plus the turn loop that runs after
+ * every command (teleport and weather countdowns, disappearing items).
+ * The console game runs one session; several sessions can tour the same
+ * SharedWorld at once, each on its own thread.
+ *
+ * A session's own commands must not run concurrently with each other;
+ * different sessions may. In a shared world each turn is carried out in the
+ * mailbox of the location the player is in, so turns at one location happen
+ * one at a time and in order while other locations run in parallel.
+ */
+public class TourSession {
+    /** Numbers sessions that have not been given an id. */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final String playerName;
+    private final TourStatus status;
+    /** World shared with other players, or null for a tour of one's own. */
+    private final SharedWorld shared;
+    /** What other players did where this player is. */
+    private final EventInbox inbox = new EventInbox();
+    private volatile boolean over;
+    /** True when countdowns advance on a WorldClock rather than on commands. */
+    private volatile boolean realTime;
+    /** True when the admin commands (see TourUMW.parseInput) are available; never for players over HTTP. */
+    private volatile boolean admin;
+    /** Where this tour's turns are streamed to spectators, or null when nobody can watch. */
+    private volatile TourPublisher spectators;
+    /** Tells this tour apart in recordings, e.g. its SessionRegistry id. */
+    private volatile String tourId = "session-" + NEXT_ID.incrementAndGet();
+
+    /**
+     * Wraps a tour that has already been given a campus and a starting location.
+     * @param playerName name shown to other players
+     * @param status tour state
+     */
+    public TourSession(String playerName, TourStatus status) {
+        this(playerName, status, null);
+    }
+
+    private TourSession(String playerName, TourStatus status, SharedWorld shared) {
+        if (status == null || status.getCampus() == null)
+            throw new IllegalArgumentException("The tour has no campus");
+        this.playerName = playerName;
+        this.status = status;
+        this.shared = shared;
+        if (shared != null) status.setListener(new Broadcaster());
+    }
+
+    /**
+     * Starts a tour of its own on a campus, at the starting location.
+     * @param playerName player name
+     * @param status fresh tour state (e.g. TourStatus.getInstance() for the console)
+     * @param campus campus to tour
+     * @return the session
+     */
+    public static TourSession solo(String playerName, TourStatus status, Campus campus) {
+        status.setCampus(campus);
+        return begin(playerName, status, null);
+    }
+
+    /**
+     * Starts a tour in a world shared with other players, at the starting location.
+     * @param playerName player name
+     * @param world shared world
+     * @return the session
+     */
+    public static TourSession join(String playerName, SharedWorld world) {
+        TourStatus status = new TourStatus();
+        status.setCampus(world.getTemplate());
+        status.setWorld(world.viewFor());
+        TourSession session = begin(playerName, status, world);
+        Location start = status.getCurrentLocation();
+        world.mailboxOf(start).tell(() -> world.arrived(start, session));
+        return session;
+    }
+
+    private static TourSession begin(String playerName, TourStatus status, SharedWorld shared) {
+        Location start = status.getCampus().getStartingLocation();
+        status.setCurrentLocation(start);
+        status.getWorld().markVisited(start);
+        return new TourSession(playerName, status, shared);
+    }
+
+    /**
+     * Picks up a tour restored from a snapshot, rejoining its shared world if it has one.
+     * @param playerName player name
+     * @param status restored tour state, at the location where it was put away
+     * @param shared shared world, or null for a tour of its own
+     * @param over whether the tour had already ended
+     * @return the session
+     */
+    public static TourSession resume(String playerName, TourStatus status, SharedWorld shared, boolean over) {
+        TourSession session = new TourSession(playerName, status, shared);
+        session.over = over;
+        if (shared != null && !over) {
+            Location here = status.getCurrentLocation();
+            shared.mailboxOf(here).tell(() -> shared.arrived(here, session));
+        }
+        return session;
+    }
+
+    public String getPlayerName() { return playerName; }
+    public TourStatus getStatus() { return status; }
+
+    /** The shared world this tour is part of, or null. */
+    public SharedWorld getSharedWorld() { return shared; }
+
+    /** Events published to this player by others at the same location. */
+    public EventInbox getInbox() { return inbox; }
+
+    /**
+     * Switches real-time mode. In real time, commands no longer advance the
+     * teleport, weather and item countdowns; whoever drives the clock calls
+     * tick() instead.
+     * @param realTime whether countdowns follow the wall clock
+     */
+    public void setRealTime(boolean realTime) { this.realTime = realTime; }
+
+    public boolean isRealTime() { return realTime; }
+
+    /**
+     * Lets this tour run admin commands: "whereis", which would give the
+     * scavenger hunt away to a player, and "stats", which reports on every
+     * tour in the process.
+     * @param admin whether admin commands are accepted
+     */
+    public void setAdmin(boolean admin) { this.admin = admin; }
+
+    public boolean isAdmin() { return admin; }
+
+    /**
+     * Streams this tour's turns to spectators from now on. A publisher
+     * outlives the session object: hand the same one to the session that
+     * replaces this one (after passivation or a campus reload).
+     * @param spectators publisher, or null to stop streaming
+     */
+    public void setSpectators(TourPublisher spectators) { this.spectators = spectators; }
+
+    /** Publisher this tour's turns are streamed to, or null. */
+    public TourPublisher getSpectators() { return spectators; }
+
+    /**
+     * Names the tour in Flight Recorder events. Like the spectators, hand
+     * the same id to the session that replaces this one.
+     * @param tourId id such as the SessionRegistry id
+     */
+    public void setTourId(String tourId) { this.tourId = tourId; }
+
+    public String getTourId() { return tourId; }
+
+    /** True once the tour has ended (e.g. caught outside by the weather). */
+    public boolean isOver() { return over; }
+
+    /**
+     * Describes where the tour starts.
+     * @return the starting location and who is there
+     */
+    public String describeStart() {
+        return status.runAs(() -> describeArrival(status.getCurrentLocation()));
+    }
+
+    /**
+     * Carries out one line of player input followed by the end-of-turn events.
+     * A line holding several commands separated by ";" or line breaks, such
+     * as "n;n;e;pickup cookie", is carried out as that many turns in a row.
+     * Only the place the player ends up is described, once at the end;
+     * everything else the turns said (pickups, warnings, weather) is kept.
+     * The run stops early if a move is blocked or the tour ends.
+     * @param input what the player typed
+     * @return everything the player should see this turn (or these turns)
+     */
+    public String handle(String input) {
+        List<String> commands = splitCommands(input);
+        return (commands == null) ? handleOne(input) : handlePipelined(commands);
+    }
+
+    /** The commands of a pipelined line, or null if it holds at most one. */
+    private static List<String> splitCommands(String input) {
+        if (input == null || (input.indexOf(';') < 0 && input.indexOf('\n') < 0)) return null;
+        List<String> commands = new ArrayList<>();
+        for (String c : input.split("[;\\r\\n]")) {
+            if (!c.isBlank()) commands.add(c.trim());
+        }
+        return (commands.size() > 1) ? commands : null;
+    }
+
+    /** Runs the commands of one line as consecutive turns, describing where they end up once. */
+    private String handlePipelined(List<String> commands) {
+        long began = System.nanoTime();
+        Location start = status.getCurrentLocation();
+        StringBuilder out = new StringBuilder();
+        int done = 0;
+        status.setDescribing(false);
+        try {
+            for (String command : commands) {
+                Location before = status.getCurrentLocation();
+                String said = handleOne(command).strip();
+                done++;
+                if (!said.isEmpty()) out.append(out.length() == 0 ? "" : System.lineSeparator()).append(said);
+                if (over) break;
+                // the rest of a route would start from the wrong place
+                if (TourUMW.parseInput(command) instanceof MovementCommand && status.getCurrentLocation() == before) break;
+            }
+        } finally {
+            status.setDescribing(true);
+        }
+        if (done < commands.size() && !over) {
+            line(out, "(Stopped after " + done + " of " + commands.size() + " commands.)");
+        }
+        Location end = status.getCurrentLocation();
+        if (!over && end != start) {
+            line(out, status.runAs(() -> describeArrival(end)));
+            if (status.getCompactView() == null) line(out, status.getDistanceSummary());
+            String others = describePlayers(end);
+            if (others != null) line(out, others);
+        }
+        Metrics.lap("command.pipelined", began);
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String text) {
+        if (out.length() > 0) out.append(System.lineSeparator());
+        out.append(text);
+    }
+
+    /** Carries out one command followed by the end-of-turn events. */
+    private String handleOne(String input) {
+        // a tour of one's own that ended can still be undone back to before the turn that ended it
+        if (over && (shared != null || !(TourUMW.parseInput(input) instanceof UndoCommand))) return "This tour is over.";
+        if (shared == null) return status.runAs(() -> takeTurn(input));
+        Location from = status.getCurrentLocation();
+        String heard = describeEvents();
+        return shared.mailboxOf(from).call(() -> {
+            String out = heard + status.runAs(() -> takeTurn(input));
+            Location to = status.getCurrentLocation();
+            if (over) {
+                shared.departed(from, this);
+            } else if (to != from) {
+                // leave here now; arrive there once the new location gets to the message
+                shared.departed(from, this);
+                shared.mailboxOf(to).tell(() -> shared.arrived(to, this));
+                String others = status.isDescribing() ? describePlayers(to) : null;
+                if (others != null) out = out + System.lineSeparator() + others;
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Ends the tour (the player quit), leaving the shared world if there is one.
+     */
+    public void leave() {
+        over = true;
+        if (shared == null) return;
+        Location here = status.getCurrentLocation();
+        shared.mailboxOf(here).tell(() -> shared.departed(here, this));
+    }
+
+    /**
+     * Stops hearing about the shared world while this session is put away;
+     * the tour itself goes on when it is resumed.
+     */
+    public void suspend() {
+        if (shared == null || over) return;
+        Location here = status.getCurrentLocation();
+        shared.mailboxOf(here).tell(() -> shared.departed(here, this));
+    }
+
+    private String takeTurn(String input) {
+        UserInputCommand cmd = TourUMW.parseInput(input, admin);
+        String verb = Metrics.commandName(cmd);
+        Location from = status.getCurrentLocation();
+        // undo goes back over turns rather than taking one
+        boolean undo = cmd instanceof UndoCommand;
+        int undoable = status.getUndoableTurns();
+        if (!undo) status.checkpoint();
+        TurnEvent event = new TurnEvent();
+        event.start();
+        long start = System.nanoTime();
+        String result = cmd.carryOut();
+        Metrics.lap(verb, start);
+        String notices = (realTime || undo) ? "" : endTurn();
+        if (undo && status.getUndoableTurns() < undoable) over = false;
+        event.finish(verb, tourId, from.getName());
+        TourPublisher p = spectators;
+        if (p != null) p.publish(playerName, input, result, notices, from, status.getCurrentLocation(), over);
+        return result + notices;
+    }
+
+    /** Lines for the events waiting in the inbox, each ending with a line break. */
+    private String describeEvents() {
+        List<PlayerEvent> events = inbox.drain();
+        if (events.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder();
+        for (PlayerEvent e : events) sb.append(e.text()).append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    /** "Players here: Sam, Alex" for the other players at a location, or null when alone or solo. */
+    private String describePlayers(Location loc) {
+        if (shared == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (TourSession other : shared.playersAt(loc)) {
+            if (other == this) continue;
+            sb.append(sb.length() == 0 ? "Players here: " : ", ").append(other.getPlayerName());
+        }
+        return (sb.length() == 0) ? null : sb.toString();
+    }
+
+    private String describeArrival(Location loc) {
+        return describeArrival(status, loc);
+    }
+
+    /**
+     * Describes a location as a player arriving there sees it: in full, or
+     * in compact mode only what changed since the tour last saw it (see
+     * CompactView).
+     * @param status the player's tour
+     * @param loc location
+     * @return description, followed by the people there
+     */
+    static String describeArrival(TourStatus status, Location loc) {
+        CompactView compact = status.getCompactView();
+        return (compact == null) ? describeInFull(status, loc) : compact.describe(status, loc);
+    }
+
+    /**
+     * Describes a location in full.
+     * @param status the player's tour
+     * @param loc location
+     * @return description, followed by the people there
+     */
+    static String describeInFull(TourStatus status, Location loc) {
+        StringBuilder out = new StringBuilder(loc.describeLocation("", status.getWorld()));
+        List<Person> people = status.getCampus().getPeopleAtLocation(loc.getName());
+        if (!people.isEmpty()) {
+            out.append(System.lineSeparator()).append("People here: ");
+            for (int i = 0; i < people.size(); i++) {
+                if (i > 0) out.append(", ");
+                out.append(people.get(i).getName());
+            }
+        }
+        return out.toString();
+    }
+
+    /** Runs the end-of-turn WorldTick, ending the tour if the weather caught the player outside. */
+    private String endTurn() {
+        WorldTick tick = WorldTick.run(status, tourId);
+        if (tick.endedTour()) over = true;
+        return tick.getNotices();
+    }
+
+    /**
+     * Lets one turn pass without a command: countdowns advance and whatever
+     * reaches zero happens. Like handle, must not run at the same time as
+     * another call for this session.
+     * @return what the player should be told, "" if nothing happened
+     */
+    public String tick() {
+        return tick(1);
+    }
+
+    /**
+     * Lets several turns pass without a command, stopping early if the tour
+     * ends, and reports them as one: spectators get a single frame with
+     * everything that happened.
+     * @param turns turns to pass
+     * @return what the player should be told, "" if nothing happened
+     */
+    public String tick(int turns) {
+        if (over || turns < 1) return "";
+        Location from = status.getCurrentLocation();
+        String out = status.runAs(() -> {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < turns && !over; i++) sb.append(endTurn());
+            return sb.toString();
+        });
+        TourPublisher p = spectators;
+        if (p != null && !out.isEmpty()) p.publish(playerName, null, "", out, from, status.getCurrentLocation(), over);
+        if (shared != null) {
+            Location to = status.getCurrentLocation();
+            if (over || to != from) shared.mailboxOf(from).tell(() -> shared.departed(from, this));
+            if (!over && to != from) shared.mailboxOf(to).tell(() -> shared.arrived(to, this));
+        }
+        return out;
+    }
+
+    /** Tells the other players in the same location what this player does. */
+    private final class Broadcaster implements TourListener {
+        @Override
+        public void pickedUp(Location loc, ItemDefinition def, int count) {
+            shared.publish(loc, TourSession.this, playerName + " picked up " + describeItems(def, count) + ".");
+        }
+
+        @Override
+        public void dropped(Location loc, ItemDefinition def, int count) {
+            shared.publish(loc, TourSession.this, playerName + " dropped " + describeItems(def, count) + ".");
+        }
+
+        @Override
+        public void moved(Location from, Location to, char direction) {
+            shared.publish(from, TourSession.this, playerName + " walked " + ShelterTable.directionName(direction) + ".");
+            shared.publish(to, TourSession.this, playerName + " arrived.");
+        }
+
+        @Override
+        public void teleported(Location from, Location to) {
+            shared.publish(from, TourSession.this, playerName + " vanished into thin air.");
+            shared.publish(to, TourSession.this, playerName + " appeared out of nowhere.");
+        }
+    }
+
+    /** "the Cookie" or "Cookie x3". */
+    private static String describeItems(ItemDefinition def, int count) {
+        return (count == 1) ? "the " + def.getName() : ItemBag.format(def, count);
+    }
+}
@@ -16,9 +16,15 @@ import java.util.*;
 
 public class TourStatus {
     private static TourStatus tourInstance;
+    // tour whose commands are running on this thread (see runAs), if not the default one
+    private static final ThreadLocal<TourStatus> CURRENT = new ThreadLocal<>();
     private Campus campus;
+    // this tour's changes to the (frozen) campus: items moved, locations visited, doors unlocked
+    private WorldState world;
     private Location currentLocation;
-    private final ArrayList<Item> backpack = new ArrayList<>();
+    private final ItemBag backpack = new ItemBag();
+    // told about pickups, drops and moves (e.g. to let other players see them)
+    private TourListener listener = TourListener.NONE;
 
     // Pending weather event (scheduled but not yet active)
     private Weather pendingWeather;
@@ -33,26 +39,142 @@ public class TourStatus {
     private boolean teleportPending = false;
     private int teleportCountdown = 0;
     // Pending disappearing items: item -> remaining turns
-    private final Map<Item, Integer> pendingDisappear = new HashMap<>();
+    private PersistentMap<Item, Integer> pendingDisappear = PersistentMap.empty();
     // Items scheduled this turn should not be decremented until next turn
-    private final Set<Item> newlyScheduledDisappear = new HashSet<>();
+    private PersistentMap<Item, Boolean> newlyScheduledDisappear = PersistentMap.empty();
 
-    private TourStatus() { }
+    /** Where teleports land and which weather comes next; see TourRandom. */
+    private TourRandom random = new TourRandom();
+
+    /** Most turns kept for undo. */
+    public static final int UNDO_LIMIT = 1000;
+    /** The tour as it was before each of its last turns, most recent last; see checkpoint. */
+    private final ArrayDeque<Checkpoint> history = new ArrayDeque<>();
+    // false while a pipelined line runs: only where it ends up gets described
+    private boolean describing = true;
+    // what this tour has been shown of each location, in compact output mode; null otherwise
+    private CompactView compactView;
 
     /**
-     * Gets the singleton instance.
+     * Everything a turn can change, as it was at one moment. The backpack
+     * and the world overlay are O(1) copies sharing structure with the live
+     * ones (see ItemBag.copy and SessionOverlay.copy), so taking one costs a
+     * few fields no matter how big the tour has grown.
+     */
+    private static final class Checkpoint {
+        final Location location;
+        final ItemBag backpack;
+        final SessionOverlay world;
+        final Weather pendingWeather;
+        final int pendingWeatherTurns;
+        final int[] steps;
+        final int turnsSinceTeleport;
+        final boolean teleportPending;
+        final int teleportCountdown;
+        final PersistentMap<Item, Integer> pendingDisappear;
+        final PersistentMap<Item, Boolean> newlyScheduledDisappear;
+        final TourRandom random;
+
+        Checkpoint(TourStatus t) {
+            location = t.currentLocation;
+            backpack = t.backpack.copy();
+            world = ((SessionOverlay) t.world).copy();
+            pendingWeather = t.pendingWeather;
+            pendingWeatherTurns = t.pendingWeatherTurns;
+            steps = t.getSteps();
+            turnsSinceTeleport = t.turnsSinceTeleport;
+            teleportPending = t.teleportPending;
+            teleportCountdown = t.teleportCountdown;
+            pendingDisappear = t.pendingDisappear;
+            newlyScheduledDisappear = t.newlyScheduledDisappear;
+            random = TourRandom.restore(t.random.getSeed(), t.random.getDraws());
+        }
+
+        void restore(TourStatus t) {
+            t.currentLocation = location;
+            t.backpack.replaceWith(backpack);
+            ((SessionOverlay) t.world).replaceWith(world);
+            t.pendingWeather = pendingWeather;
+            t.pendingWeatherTurns = pendingWeatherTurns;
+            t.setSteps(steps[0], steps[1], steps[2], steps[3]);
+            t.restoreTeleport(turnsSinceTeleport, teleportPending, teleportCountdown);
+            t.pendingDisappear = pendingDisappear;
+            t.newlyScheduledDisappear = newlyScheduledDisappear;
+            t.random = TourRandom.restore(random.getSeed(), random.getDraws());
+        }
+    }
+
+    /**
+     * Creates a new, independent tour. Use runAs to carry out its commands.
+     */
+    public TourStatus() { }
+
+    /**
+     * Gets the tour whose commands are running on this thread, or the
+     * default (console) tour when none is bound.
      * @return TourStatus
      */
     public static TourStatus getInstance() {
+        TourStatus bound = CURRENT.get();
+        if (bound != null) return bound;
         if (tourInstance == null) tourInstance = new TourStatus();
         return tourInstance;
     }
 
     /**
-     * Sets the campus.
+     * Runs work with this tour as the current one, so that commands calling
+     * getInstance() act on it.
+     * @param work work to run
+     * @return the work's result
+     */
+    public <T> T runAs(java.util.function.Supplier<T> work) {
+        TourStatus previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Carries out a command for this tour.
+     * @param cmd command
+     * @return output text
+     */
+    public String execute(UserInputCommand cmd) {
+        return runAs(cmd::carryOut);
+    }
+
+    /**
+     * Sets the campus and starts a fresh copy-on-write overlay on it.
      * @param campus campus
      */
-    public void setCampus(Campus campus) { this.campus = campus; }
+    public void setCampus(Campus campus) {
+        this.campus = campus;
+        this.world = (campus == null) ? null : new SessionOverlay(campus);
+    }
+
+    /**
+     * Gets this tour's view of the changeable parts of the campus.
+     * @return world state
+     */
+    public WorldState getWorld() { return world; }
+
+    /**
+     * Replaces this tour's world state (e.g. to join a shared world).
+     * @param world world state
+     */
+    public void setWorld(WorldState world) { this.world = world; }
+
+    /**
+     * Sets who is told about this tour's pickups, drops and moves.
+     * @param listener listener, or null for none
+     */
+    public void setListener(TourListener listener) {
+        this.listener = (listener == null) ? TourListener.NONE : listener;
+    }
 
     /**
      * Gets the campus.
@@ -72,6 +194,19 @@ public class TourStatus {
      */
     public Location getCurrentLocation() { return currentLocation; }
 
+    /**
+     * Walks to a neighbouring location: moves there, marks it visited and counts the step.
+     * @param next location entered
+     * @param dir direction walked ("n","s","e","w")
+     */
+    public void moveTo(Location next, String dir) {
+        Location from = currentLocation;
+        setCurrentLocation(next);
+        world.markVisited(next);
+        recordMove(dir);
+        listener.moved(from, next, Character.toLowerCase(dir.charAt(0)));
+    }
+
     /**
      * Attempts to move in a direction and updates current location on success.
      * @param dir "n","s","e","w" (case-insensitive; only first char used)
@@ -82,7 +217,7 @@ public class TourStatus {
         Location next = currentLocation.leaveLocation(dir);
         if (next != null) {
             this.currentLocation = next;
-            this.currentLocation.setHaveVisited(true);
+            world.markVisited(next);
         }
         return next;
     }
@@ -93,10 +228,19 @@ public class TourStatus {
      * @return the same item
      */
     public Item addToBackpack(Item item) {
-        if (item != null) backpack.add(item);
+        if (item != null) backpack.add(item.getDefinition(), 1);
         return item;
     }
 
+    /**
+     * Adds several copies of an item to the backpack.
+     * @param def item definition
+     * @param count number of copies
+     */
+    public void addToBackpack(ItemDefinition def, int count) {
+        backpack.add(def, count);
+    }
+
     /**
      * Drops an item from the backpack by name (case-insensitive) into the current location.
      * @param disappear item name
@@ -104,17 +248,39 @@ public class TourStatus {
      */
     public Item dropItemFromBackpack(Item disappear) {
         if (disappear == null) return null;
-        for (int i = 0; i < backpack.size(); i++) {
-            Item it = backpack.get(i);
-            if (it.getName().equalsIgnoreCase(disappear.getName())) {
-                backpack.remove(i);
-                // cancel any pending disappearance when the item leaves the backpack
-                cancelPendingDisappear(it);
-                if (currentLocation != null) currentLocation.addItem(it);
-                return it;
-            }
+        return dropItemsFromBackpack(disappear.getName(), 1) == 1 ? disappear : null;
+    }
+
+    /**
+     * Drops up to count copies of an item from the backpack into the current location.
+     * @param name item name (case-insensitive)
+     * @param count copies to drop (ItemBag.ALL for every copy)
+     * @return number of copies dropped
+     */
+    public int dropItemsFromBackpack(String name, int count) {
+        ItemDefinition def = backpack.find(name);
+        if (def == null) return 0;
+        int dropped = backpack.remove(def, count);
+        // cancel any pending disappearance once the last copy leaves the backpack
+        if (backpack.count(def.getName()) == 0) cancelPendingDisappear(new Item(def));
+        if (currentLocation != null && dropped > 0) {
+            world.addItems(currentLocation, def, dropped);
+            listener.dropped(currentLocation, def, dropped);
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops everything in the backpack into the current location.
+     * @return the stacks that were dropped, formatted as "Cookie x3"
+     */
+    public List<String> dropAllFromBackpack() {
+        List<String> dropped = new ArrayList<>();
+        for (ItemBag.Stack st : new ArrayList<>(backpack.stacks())) {
+            int n = dropItemsFromBackpack(st.getDefinition().getName(), ItemBag.ALL);
+            dropped.add(ItemBag.format(st.getDefinition(), n));
         }
-        return null;
+        return dropped;
     }
 
     /**
@@ -124,14 +290,28 @@ public class TourStatus {
      */
     public Item pickupItemFromLocation(String name) {
         if (currentLocation == null || name == null) return null;
-        Item found = currentLocation.getItemNamed(name);
-        if (found != null) {
-            currentLocation.removeItem(found);
-            backpack.add(found);
-            // schedule disappearance after 5 turns (user has 5 turns to use it)
-            setPendingDisappear(found, 5);
-        }
-        return found;
+        ItemDefinition found = world.findItem(currentLocation, name);
+        if (found == null || pickupItemsFromLocation(found.getName(), 1) == 0) return null;
+        return new Item(found);
+    }
+
+    /**
+     * Picks up to count copies of an item from the current location into the backpack.
+     * @param name item name (case-insensitive)
+     * @param count copies to pick up (ItemBag.ALL for every copy)
+     * @return number of copies picked up
+     */
+    public int pickupItemsFromLocation(String name, int count) {
+        if (currentLocation == null || name == null) return 0;
+        ItemDefinition found = world.findItem(currentLocation, name);
+        if (found == null) return 0;
+        int taken = world.removeItems(currentLocation, found.getName(), count);
+        if (taken == 0) return 0;
+        backpack.add(found, taken);
+        listener.pickedUp(currentLocation, found, taken);
+        // schedule disappearance after 5 turns (user has 5 turns to use it)
+        setPendingDisappear(new Item(found), 5);
+        return taken;
     }
 
     /**
@@ -140,8 +320,24 @@ public class TourStatus {
      */
     public void setPendingDisappear(Item item, int turns) {
         if (item == null || turns < 1) return;
-        pendingDisappear.put(item, turns);
-        newlyScheduledDisappear.add(item);
+        pendingDisappear = pendingDisappear.plus(item, turns);
+        newlyScheduledDisappear = newlyScheduledDisappear.plus(item, Boolean.TRUE);
+    }
+
+    /**
+     * Returns the items waiting to disappear and the turns each has left.
+     */
+    public Map<Item, Integer> getPendingDisappears() {
+        Map<Item, Integer> out = new LinkedHashMap<>();
+        pendingDisappear.forEach(out::put);
+        return Collections.unmodifiableMap(out);
+    }
+
+    /**
+     * Restores a disappearance timer exactly as it was (e.g. when a saved session is resumed).
+     */
+    public void restorePendingDisappear(Item item, int turns) {
+        if (item != null && turns > 0) pendingDisappear = pendingDisappear.plus(item, turns);
     }
 
     /**
@@ -149,32 +345,30 @@ public class TourStatus {
      */
     public void cancelPendingDisappear(Item item) {
         if (item == null) return;
-        pendingDisappear.remove(item);
-        newlyScheduledDisappear.remove(item);
+        pendingDisappear = pendingDisappear.minus(item);
+        newlyScheduledDisappear = newlyScheduledDisappear.minus(item);
     }
 
     /**
      * Decrement all pending disappearance timers (except those scheduled this turn).
-     * Removes expired items from the backpack and returns the list of removed items.
+     * Removes expired items (every copy of them) from the backpack and returns the list of removed items.
      */
     public java.util.List<Item> tickPendingDisappears() {
         java.util.List<Item> expired = new java.util.ArrayList<>();
-        Iterator<Map.Entry<Item, Integer>> it = pendingDisappear.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Item, Integer> e = it.next();
+        for (Map.Entry<Item, Integer> e : pendingDisappear) {
             Item item = e.getKey();
-            if (newlyScheduledDisappear.contains(item)) {
+            if (newlyScheduledDisappear.containsKey(item)) {
                 // skip decrement this turn; the item becomes active next turn
-                newlyScheduledDisappear.remove(item);
+                newlyScheduledDisappear = newlyScheduledDisappear.minus(item);
                 continue;
             }
             int rem = e.getValue() - 1;
             if (rem <= 0) {
-                it.remove();
-                backpack.remove(item);
+                pendingDisappear = pendingDisappear.minus(item);
+                backpack.remove(item.getDefinition(), ItemBag.ALL);
                 expired.add(item);
             } else {
-                e.setValue(rem);
+                pendingDisappear = pendingDisappear.plus(item, rem);
             }
         }
         return expired;
@@ -206,6 +400,25 @@ public class TourStatus {
         return "Moves: N=" + northSteps + " S=" + southSteps + " E=" + eastSteps + " W=" + westSteps
             + " | Total=" + total;
     }
+
+    /**
+     * Returns the steps taken in each direction.
+     * @return {north, south, east, west}
+     */
+    public int[] getSteps() {
+        return new int[] { northSteps, southSteps, eastSteps, westSteps };
+    }
+
+    /**
+     * Restores the steps taken in each direction.
+     */
+    public void setSteps(int north, int south, int east, int west) {
+        northSteps = north;
+        southSteps = south;
+        eastSteps = east;
+        westSteps = west;
+    }
+
     /**
      * Schedules a pending weather event to occur after a number of turns.
      * @param w weather event
@@ -237,6 +450,11 @@ public class TourStatus {
      */
     public Weather getPendingWeather() { return pendingWeather; }
 
+    /**
+     * Returns the turns left before the pending weather strikes (0 if none).
+     */
+    public int getPendingWeatherTurns() { return pendingWeatherTurns; }
+
     /**
      * Clears and returns the pending weather when it triggers.
      */
@@ -249,16 +467,10 @@ public class TourStatus {
 
     /**
      * Lists backpack item names as a string.
-     * @return "Backpack: (empty)" or "Backpack: a, b, c"
+     * @return "Backpack: (empty)" or "Backpack: a, b x3, c"
      */
     public String listBackpackItems() {
-        if (backpack.isEmpty()) return "Backpack: (empty)";
-        StringBuilder sb = new StringBuilder("Backpack: ");
-        for (int i = 0; i < backpack.size(); i++) {
-            if (i > 0) sb.append(", ");
-            sb.append(backpack.get(i).getName());
-        }
-        return sb.toString();
+        return backpack.describe("Backpack", "(empty)");
     }
 
     /**
@@ -279,6 +491,36 @@ public class TourStatus {
     /** Returns true if a teleport is pending. */
     public boolean hasPendingTeleport() { return teleportPending; }
 
+    /** Returns the turns counted towards the next teleport warning. */
+    public int getTurnsSinceTeleport() { return turnsSinceTeleport; }
+
+    /** Returns the turns left before a pending teleport. */
+    public int getTeleportCountdown() { return teleportCountdown; }
+
+    /** The tour's random source. */
+    public TourRandom getRandom() { return random; }
+
+    /**
+     * Replaces the tour's random source (e.g. with one restored from a save).
+     * @param random random source
+     */
+    public void setRandom(TourRandom random) {
+        if (random == null) throw new IllegalArgumentException("random is null");
+        this.random = random;
+    }
+
+    /**
+     * Restores the teleport counters (e.g. when a saved session is resumed).
+     * @param turnsSince turns counted towards the next teleport warning
+     * @param pending whether a teleport is pending
+     * @param countdown turns left before the pending teleport
+     */
+    public void restoreTeleport(int turnsSince, boolean pending, int countdown) {
+        this.turnsSinceTeleport = turnsSince;
+        this.teleportPending = pending;
+        this.teleportCountdown = countdown;
+    }
+
     /** Decrements teleport countdown and returns remaining turns before teleport. */
     public int decrementTeleportCountdown() {
         if (!teleportPending) return -1;
@@ -300,11 +542,12 @@ public class TourStatus {
      */
     public Location teleportToRandomLocation() {
         if (campus == null) return null;
-        java.util.List<Location> allLocs = new java.util.ArrayList<>(campus.getLocations().values());
-        if (allLocs.isEmpty()) return null;
-        Location newLoc = allLocs.get(new java.util.Random().nextInt(allLocs.size()));
+        Location newLoc = campus.randomLocation(random);
+        if (newLoc == null) return null;
+        Location from = currentLocation;
         setCurrentLocation(newLoc);
-        newLoc.setHaveVisited(true);
+        world.markVisited(newLoc);
+        listener.teleported(from, newLoc);
         return newLoc;
     }
 
@@ -316,7 +559,11 @@ public class TourStatus {
     public String useItemFromBackpack(String name) {
         if (name == null) return "Please specify which item to use.";
         Item item = getItemFromBackpack(name);
-        if (item == null) return "You don't have a \"" + name + "\" in your backpack.";
+        if (item == null) {
+            NameIndex.Match<ItemDefinition> m = resolveBackpackItem(name);
+            if (!m.isUnique()) return "You don't have a \"" + name + "\" in your backpack." + m.didYouMean();
+            item = getItemFromBackpack(m.get().getName());
+        }
 
         String tgt = item.getTransformTarget();
         if (tgt == null || tgt.isBlank()) {
@@ -327,19 +574,12 @@ public class TourStatus {
         cancelPendingDisappear(item);
 
         // Transform the item
-        Item def = campus.getItemDefinition(tgt);
-        Item transformed;
-        if (def != null) {
-            transformed = new Item(def.getName(), def.getMessage());
-            transformed.setTransformTarget(def.getTransformTarget());
-        } else {
-            transformed = new Item(tgt, "");
-        }
+        ItemDefinition def = campus.getItemDefinition(tgt);
+        Item transformed = (def != null) ? new Item(def) : new Item(tgt, "");
 
-        int idx = backpack.indexOf(item);
-        if (idx >= 0) {
-            backpack.set(idx, transformed);
-        }
+        // one copy is used up and replaced by what it turns into
+        backpack.remove(item.getDefinition(), 1);
+        backpack.add(transformed.getDefinition(), 1);
         return "You used the " + item.getName() + " and it transformed into " + transformed.getName() + "!";
     }
 
@@ -349,11 +589,36 @@ public class TourStatus {
      * @return the matching item, null if none
      */
     public Item getItemFromBackpack(String name) {
-        if (name == null) return null;
-        for (Item it : backpack) {
-            if (name.equalsIgnoreCase(it.getName())) return it;
-        }
-        return null;
+        ItemDefinition def = backpack.find(name);
+        return (def == null) ? null : new Item(def);
+    }
+
+    /**
+     * Counts copies of an item in the backpack.
+     * @param name item name (case-insensitive)
+     * @return number of copies, 0 if none
+     */
+    public int getBackpackCount(String name) {
+        return backpack.count(name);
+    }
+
+    /**
+     * Resolves a possibly misspelled or partial item name against the items in the current location.
+     * @param name what the player typed
+     * @return the matching item definition, or suggestions
+     */
+    public NameIndex.Match<ItemDefinition> resolveItemHere(String name) {
+        Location here = currentLocation;
+        return campus.getItemIndex().resolve(name, def -> here != null && world.itemCount(here, def.getName()) > 0);
+    }
+
+    /**
+     * Resolves a possibly misspelled or partial item name against the backpack.
+     * @param name what the player typed
+     * @return the matching item definition, or suggestions
+     */
+    public NameIndex.Match<ItemDefinition> resolveBackpackItem(String name) {
+        return campus.getItemIndex().resolve(name, def -> backpack.count(def.getName()) > 0);
     }
 
     public void setDistance(int distance) {
@@ -364,11 +629,94 @@ public class TourStatus {
         westSteps = 0;
     }
 
+    /**
+     * Remembers the tour as it is now, before a turn, so that the turn can
+     * be undone. Only a tour of one's own can be undone: in a shared world
+     * other players may have acted on what the turn changed, so nothing is
+     * recorded there. At most UNDO_LIMIT turns are kept.
+     */
+    public void checkpoint() {
+        if (!(world instanceof SessionOverlay)) return;
+        if (history.size() == UNDO_LIMIT) history.removeFirst();
+        history.addLast(new Checkpoint(this));
+    }
+
+    /**
+     * Puts the tour back as it was before its last few turns: position,
+     * backpack, items on campus, visited places, unlocked doors, weather,
+     * teleport and disappearing-item countdowns, and the random source.
+     * @param turns turns to undo (at least 1)
+     * @return turns actually undone, fewer if fewer were recorded
+     */
+    public int undo(int turns) {
+        if (turns < 1) throw new IllegalArgumentException("Must undo at least one turn");
+        Checkpoint target = null;
+        int undone = 0;
+        while (undone < turns && !history.isEmpty()) {
+            target = history.removeLast();
+            undone++;
+        }
+        if (target != null) target.restore(this);
+        return undone;
+    }
+
+    /** Number of turns that can be undone. */
+    public int getUndoableTurns() { return history.size(); }
+
+    /**
+     * Passes each turn that can be undone, oldest first, as a tour of its
+     * own on the same campus standing where this one stood before that
+     * turn; used to save the undo history (see SessionSnapshot).
+     * @param visit receives each earlier state; only valid during the call
+     */
+    public void forEachUndoableTurn(java.util.function.Consumer<TourStatus> visit) {
+        for (Checkpoint c : history) {
+            TourStatus before = new TourStatus();
+            before.setCampus(campus);
+            c.restore(before);
+            visit.accept(before);
+        }
+    }
+
+    /**
+     * Adds a turn to undo behind the ones already recorded, as it was
+     * before that turn; used to read the undo history back.
+     * @param before the earlier state, on this tour's campus
+     */
+    public void addUndoableTurn(TourStatus before) {
+        if (!(world instanceof SessionOverlay)) return;
+        if (history.size() == UNDO_LIMIT) history.removeFirst();
+        history.addLast(new Checkpoint(before));
+    }
+
+    /**
+     * Whether commands describe the location the player ends up in. Turned
+     * off while the commands of a pipelined line run (see TourSession.handle),
+     * which describes only where the last of them leaves the player.
+     * @param describing false to leave arrivals undescribed
+     */
+    public void setDescribing(boolean describing) { this.describing = describing; }
+
+    public boolean isDescribing() { return describing; }
+
+    /**
+     * Switches compact output: locations seen before are described only by
+     * what changed since (see CompactView).
+     * @param compact true for compact output, false for full descriptions
+     */
+    public void setCompact(boolean compact) {
+        if (compact && compactView == null) compactView = new CompactView();
+        if (!compact) compactView = null;
+    }
+
+    /** The compact output state, or null when locations are described in full. */
+    public CompactView getCompactView() { return compactView; }
+
     public void clearBackpack() {
         backpack.clear();
     }
 
-    public List<Item> getBackpack() {
+    public ItemBag getBackpack() {
         return backpack;
     }
 }
\ No newline at end of file
@@ -1,6 +1,13 @@
 import java.util.Scanner;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * File format expected:
@@ -28,31 +35,67 @@ public class TourUMW {
 
     /**
      * Main entry.
-     * @param args optional path to data file
+     * @param args "--watch" to reload the data file whenever it is edited;
+     *             "--realtime" or "--realtime=SECONDS" to let a turn pass every
+     *             SECONDS (default 10) whether or not anything is typed
+     *             (served tours stream those turns to their spectators);
+     *             "--serve" or "--serve=PORT" to serve tours over HTTP (see
+     *             TourServer, default port 8080) instead of touring here;
+     *             with --serve, "--campuses=FILE,FILE..." to host more campuses
+     *             alongside the one chosen (see CampusRegistry);
+     *             "--compact" to describe places already seen only by what
+     *             changed there (see CompactView); "--admin" to allow the
+     *             admin commands on the console (never over HTTP);
+     *             "--paged=MEGABYTES" to load the campus a region at a time,
+     *             keeping about that much of it loaded (see Campus.paged;
+     *             not with --watch)
      * @throws Exception on unexpected error
      */
     public static void main(String[] args) throws Exception {
         Scanner s = new Scanner(System.in);
+        Metrics.registerMBean();
 
-        Campus campus = setUpCampus(s);
-        TourStatus ts = TourStatus.getInstance();
-        ts.setCampus(campus);
-        ts.setCurrentLocation(campus.getStartingLocation());
-        ts.getCurrentLocation().setHaveVisited(true);
+        File campusFile = chooseCampusFile(s);
+        Campus campus = loadCampus(campusFile, args);
+        Integer port = servePort(args);
+        if (port != null) {
+            serve(campusFile, campus, port, args);
+            return;
+        }
+        TourSession session = TourSession.solo("You", TourStatus.getInstance(), campus);
+        session.getStatus().setCompact(java.util.Arrays.asList(args).contains("--compact"));
+        boolean admin = java.util.Arrays.asList(args).contains("--admin");
+        session.setAdmin(admin);
+        WorldVersion version = WorldVersion.initial(campus, null);
+        CampusWatcher watcher = null;
+        if (java.util.Arrays.asList(args).contains("--watch")) {
+            // reload problems are shown as they happen; successful reloads when the tour moves over
+            watcher = new CampusWatcher(campusFile.toPath(), version, msg -> {
+                if (!msg.startsWith("Campus reloaded")) System.out.println(msg);
+            });
+        }
 
         // Print starting location and any people present
-        System.out.println(ts.getCurrentLocation().describeLocation(""));
-        java.util.List<Person> startPeople = ts.getCampus().getPeopleAtLocation(ts.getCurrentLocation().getName());
-        if (!startPeople.isEmpty()) {
-            System.out.print("People here: ");
-            for (int i = 0; i < startPeople.size(); i++) {
-                if (i > 0) System.out.print(", ");
-                System.out.print(startPeople.get(i).getName());
-            }
-            System.out.println();
+        System.out.println(session.describeStart());
+
+        // in real time the clock and the player take turns on the session one at a time
+        AtomicReference<TourSession> current = new AtomicReference<>(session);
+        WorldClock clock = null;
+        Duration turn = realTimeTurn(args);
+        if (turn != null) {
+            session.setRealTime(true);
+            clock = new WorldClock(Duration.ofMillis(100));
+            clock.every(turn, () -> {
+                synchronized (current) {
+                    String out = current.get().tick();
+                    if (out.isEmpty()) return;
+                    System.out.print(out + System.lineSeparator() + (current.get().isOver() ? "" : "\n> "));
+                    System.out.flush();
+                }
+            });
         }
 
-        while (true) {
+        while (!session.isOver()) {
             System.out.print("\n> ");
             String input = s.nextLine();
             if (input == null) continue;
@@ -60,78 +103,129 @@ public class TourUMW {
                 System.out.println("Goodbye!");
                 break;
             }
-            UserInputCommand cmd = parseInput(input);
-            System.out.println(cmd.carryOut());
-
-            // Check for teleport scheduling after every 5 turns
-            if (ts.checkAndIncrementTeleportCounter()) {
-                System.out.println();
-                System.out.println("WARNING: A mysterious force is gathering... You will be teleported in 3 turns!");
+            synchronized (current) {
+                if (session.isOver()) break;
+                WorldVersion latest = version.latest();
+                if (latest != version) {
+                    session = version.migrate(session, latest);
+                    session.setRealTime(turn != null);
+                    session.setAdmin(admin);
+                    current.set(session);
+                    version = latest;
+                    System.out.println("(The campus was updated. " + version.getDiff().summary() + ")");
+                }
+                System.out.println(session.handle(input));
             }
+        }
+        if (watcher != null) watcher.close();
+        if (clock != null) clock.close();
+    }
 
-            // Handle pending teleport countdown
-            if (ts.hasPendingTeleport()) {
-                int remaining = ts.decrementTeleportCountdown();
-                if (remaining > 0) {
-                    System.out.println("Teleport warning: You will be transported in " + remaining + " turns.");
-                } else {
-                    Location teleportLoc = ts.consumeAndTeleport();
-                    if (teleportLoc != null) {
-                        System.out.println();
-                        System.out.println("*** You have been mysteriously teleported to " + teleportLoc.getName() + "! ***");
-                        System.out.println(teleportLoc.describeLocation(""));
-                        java.util.List<Person> telePeople = ts.getCampus().getPeopleAtLocation(teleportLoc.getName());
-                        if (!telePeople.isEmpty()) {
-                            System.out.print("People here: ");
-                            for (int i = 0; i < telePeople.size(); i++) {
-                                if (i > 0) System.out.print(", ");
-                                System.out.print(telePeople.get(i).getName());
-                            }
-                            System.out.println();
-                        }
-                    }
-                }
+    /**
+     * Loads the campus chosen, paged if --paged=MEGABYTES was given.
+     * @throws IllegalArgumentException if paging is asked for with --watch,
+     *         which compares whole versions of the campus
+     */
+    private static Campus loadCampus(File campusFile, String[] args) throws IOException {
+        for (String a : args) {
+            if (!a.startsWith("--paged=")) continue;
+            if (java.util.Arrays.asList(args).contains("--watch"))
+                throw new IllegalArgumentException("--paged cannot be used with --watch");
+            double megabytes = Double.parseDouble(a.substring("--paged=".length()));
+            if (!(megabytes > 0)) throw new IllegalArgumentException("--paged needs a positive number of megabytes");
+            return Campus.paged(campusFile, (long) (megabytes * 1024 * 1024));
+        }
+        return Campus.fromFile(campusFile);
+    }
+
+    /** The port asked for with --serve[=PORT], or null to tour on the console. */
+    private static Integer servePort(String[] args) {
+        for (String a : args) {
+            if (a.equals("--serve")) return 8080;
+            if (a.startsWith("--serve=")) return Integer.parseInt(a.substring("--serve=".length()));
+        }
+        return null;
+    }
+
+    /** Serves tours of the campus, and any others asked for, over HTTP until the process is stopped. */
+    private static void serve(File campusFile, Campus campus, int port, String[] args) throws Exception {
+        TourServer server = startServer(campusFile, campus, port, args);
+        System.out.println("Serving tours of " + campus.getName() + " on http://localhost:" + server.getPort() + "/tours");
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Sets up the registries and starts the server. Kept apart from serve so
+     * that the first version of each campus is not held while serving: later
+     * versions are reached from it, so holding it would keep every reload.
+     */
+    private static TourServer startServer(File campusFile, Campus campus, int port, String[] args) throws Exception {
+        WorldVersion version = WorldVersion.initial(campus, null);
+        boolean watch = java.util.Arrays.asList(args).contains("--watch");
+        if (watch) {
+            new CampusWatcher(campusFile.toPath(), version, System.out::println);
+        }
+        CampusRegistry campuses = null;
+        List<File> more = campusFiles(args);
+        if (!more.isEmpty()) {
+            campuses = CampusRegistry.load(more);
+            for (File f : more) {
+                WorldVersion v = campuses.get(CampusRegistry.nameOf(f));
+                if (watch) new CampusWatcher(f.toPath(), v, System.out::println);
+                System.out.println("Hosting campus \"" + CampusRegistry.nameOf(f) + "\": " + v.getCampus().getName());
             }
+        }
+        Path dir = Paths.get("tours");
+        SessionRegistry registry = new SessionRegistry(version, dir.resolve("idle"), Duration.ofMinutes(10));
+        Duration turn = realTimeTurn(args);
+        if (turn != null) {
+            // turns on the clock reach players through GET /tours/{id}/stream
+            registry.runInRealTime(new WorldClock(Duration.ofMillis(100)), turn);
+            System.out.println("A turn passes every " + turn.toMillis() / 1000.0 + " seconds.");
+        }
+        return new TourServer(registry, campuses, port, dir.resolve("saves"));
+    }
 
-            // Weather system with a 5-turn countdown: if a weather is pending, decrement and trigger when it reaches 0.
-            if (ts.hasPendingWeather()) {
-                int remaining = ts.decrementPendingWeather();
-                if (remaining > 0) {
-                    System.out.println("Warning: " + ts.getPendingWeather().getName() + " expected in " + remaining + " turns.");
-                } else {
-                    Weather w = ts.consumePendingWeather();
-                    System.out.println();
-                    System.out.println("*** Weather event: " + w.getName() + " ***");
-                    System.out.println(w.getEventMessage());
-                    Location here = ts.getCurrentLocation();
-                    if (here == null || !here.isIndoors()) {
-                        System.out.println("You were outside when the " + w.getName() + " struck. Game over.");
-                        break;
-                    } else {
-                        System.out.println("You're inside a building and are protected from the " + w.getName() + ".");
-                    }
-                }
-            } else {
-                // No pending weather: schedule a new random weather to occur in 3 turns
-                Weather w = WeatherFactory.randomWeather();
-                ts.setPendingWeather(w, 5);
-                System.out.println();
-                System.out.println("Weather warning: " + w.getName() + " expected in 5 turns.");
+    /** The extra campus files asked for with --campuses=FILE,FILE..., none if not given. */
+    private static List<File> campusFiles(String[] args) {
+        List<File> files = new ArrayList<>();
+        for (String a : args) {
+            if (!a.startsWith("--campuses=")) continue;
+            for (String path : a.substring("--campuses=".length()).split(",")) {
+                if (!path.trim().isEmpty()) files.add(new File(path.trim()));
             }
+        }
+        return files;
+    }
 
-            // Tick pending disappearing items (items picked up have a 5-turn window to be used)
-            java.util.List<Item> expired = ts.tickPendingDisappears();
-            for (Item rem : expired) {
-                System.out.println("The " + rem.getName() + " has disappeared from your backpack after not being used.");
+    /** The turn length asked for with --realtime[=SECONDS], or null for turns on commands. */
+    private static Duration realTimeTurn(String[] args) {
+        for (String a : args) {
+            if (a.equals("--realtime")) return Duration.ofSeconds(10);
+            if (a.startsWith("--realtime=")) {
+                double seconds = Double.parseDouble(a.substring("--realtime=".length()));
+                if (!(seconds > 0)) throw new IllegalArgumentException("--realtime needs a positive number of seconds");
+                return Duration.ofMillis((long) (seconds * 1000));
             }
         }
+        return null;
     }
 
     /**
+     * Parses a player's input; admin commands are not recognised.
      * @param input raw user input
      * @return a UserInputCommand
      */
     public static UserInputCommand parseInput(String input) {
+        return parseInput(input, false);
+    }
+
+    /**
+     * @param input raw user input
+     * @param admin true to also recognise the admin commands "stats" and "whereis"
+     * @return a UserInputCommand
+     */
+    public static UserInputCommand parseInput(String input, boolean admin) {
         if (input == null) return new InvalidCommand("");
         String lower = input.toLowerCase(Locale.ROOT).trim();
 
@@ -188,22 +282,47 @@ public class TourUMW {
             return new LoadCommand();
         }
 
+        // Look
+        if (lower.equals("look")) {
+            return new LookCommand();
+        }
+
+        // Undo
+        if (lower.equals("undo") || lower.startsWith("undo ")) {
+            return new UndoCommand(extractArg(lower, "undo"));
+        }
+
+        // Shelter
+        if (lower.equals("shelter")) {
+            return new ShelterCommand();
+        }
+
+        // Stats (admin)
+        if (admin && lower.equals("stats")) {
+            return new StatsCommand();
+        }
+
+        // Where is (admin)
+        if (admin && lower.startsWith("whereis")) {
+            return new WhereIsCommand(extractArg(lower, "whereis"));
+        }
+
         return new InvalidCommand(input);
     }
 
     /**
-     * Sets up the campus by asking for a file path (default sample_umw.txt).
+     * Greets the player and asks which campus data file to tour (default
+     * umw_campus_scavenger.txt). The file is not read here; main loads it,
+     * and a watcher may load it again later.
      * @param s scanner for input
-     * @return loaded campus
-     * @throws Exception if load fails
+     * @return the chosen data file
      */
-    public static Campus setUpCampus(Scanner s) throws Exception {
+    public static File chooseCampusFile(Scanner s) {
         System.out.println("Welcome to the UMW Virtual Tour!");
-        System.out.println("(Commands: n/s/e/w, pickup <item>, drop <item>, backpack, disapear for item to vanish, use <item>, meet to talk NPC, save, load, q to quit.)");
+        System.out.println("(Commands: n/s/e/w, pickup [n|all] <item>, drop [n|all] <item>, backpack, disapear for item to vanish, use <item>, meet to talk NPC, shelter, look, undo [n], save, load, q to quit. Chain commands with semicolons, e.g. n;n;e.)");
         System.out.print("Enter data file path (or press Enter for umw_campus_scavenger.txt): ");
-        String path = s.nextLine().trim();
-        File f = path.isEmpty() ? new File("umw_campus_scavenger.txt") : new File(path);
-        return Campus.fromFile(f);
+        String path = s.hasNextLine() ? s.nextLine().trim() : "";
+        return path.isEmpty() ? new File("umw_campus_scavenger.txt") : new File(path);
     }
 
     /**
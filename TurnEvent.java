@@ -0,0 +1,77 @@
+import java.lang.management.ManagementFactory;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one turn: the command and the end-of-turn
+ * events that followed it. Like all JFR events it costs (next to) nothing
+ * unless a recording with it enabled is running; the allocation counter is
+ * only read when it is.
+ */
+@Name("TourUMW.Turn")
+@Label("Turn")
+@Category("TourUMW")
+@Description("One command and the end-of-turn events that followed it")
+public final class TurnEvent extends jdk.jfr.Event {
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    @Label("Verb")
+    @Description("Kind of command, e.g. command.pickup")
+    public String verb;
+
+    @Label("Session")
+    @Description("Which tour took the turn: its registry id, or session-N for one outside a registry")
+    public String session;
+
+    @Label("Location")
+    @Description("Where the player was when the turn started")
+    public String location;
+
+    @Label("Allocated")
+    @DataAmount
+    @Description("Bytes allocated by the thread during the turn, or -1 if unknown")
+    public long allocated = -1;
+
+    private transient long allocatedBefore = -1;
+    /** False if the event was not enabled at start, even if a recording began since. */
+    private transient boolean started;
+
+    /** Starts timing; reads the allocation counter only if the event is enabled. */
+    public void start() {
+        if (!isEnabled()) return;
+        allocatedBefore = allocatedBytes();
+        started = true;
+        begin();
+    }
+
+    /**
+     * Ends the turn and commits the event if it is being recorded and was
+     * started; a turn already under way when a recording begins is left out.
+     * @param verb kind of command
+     * @param session tour id (see TourSession.getTourId)
+     * @param location where the turn started
+     */
+    public void finish(String verb, String session, String location) {
+        if (!started) return;
+        end();
+        if (!shouldCommit()) return;
+        this.verb = verb;
+        this.session = session;
+        this.location = location;
+        long after = allocatedBytes();
+        if (allocatedBefore >= 0 && after >= 0) allocated = after - allocatedBefore;
+        commit();
+    }
+
+    private static long allocatedBytes() {
+        return (THREADS == null) ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return (bean instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Command for "undo" or "undo n": takes back the player's last turn, or last
+ * n turns, on a tour of their own. Undoing is not a turn itself: nothing
+ * counts down while it happens.
+ */
+public class UndoCommand implements UserInputCommand {
+    private final String arg;
+
+    /**
+     * @param arg what followed "undo" (a number of turns), or null for one turn
+     */
+    public UndoCommand(String arg) {
+        this.arg = arg;
+    }
+
+    /**
+     * Restores the tour as it was before the turns undone.
+     * @return how many turns were undone and where the player is now
+     */
+    @Override
+    public String carryOut() {
+        TourStatus ts = TourStatus.getInstance();
+        int turns = 1;
+        if (arg != null && !arg.isEmpty()) {
+            try {
+                turns = Integer.parseInt(arg);
+            } catch (NumberFormatException e) {
+                turns = 0;
+            }
+            if (turns < 1) return "Undo how many turns? Try \"undo\" or \"undo 3\".";
+        }
+        if (!(ts.getWorld() instanceof SessionOverlay)) return "Turns can't be undone in a world shared with other players.";
+        int undone = ts.undo(turns);
+        if (undone == 0) return "There is nothing to undo.";
+        String said = "Undid " + (undone == 1 ? "the last turn." : "the last " + undone + " turns.");
+        if (!ts.isDescribing()) return said;
+        return said + System.lineSeparator() + TourSession.describeArrival(ts, ts.getCurrentLocation());
+    }
+}
@@ -0,0 +1,33 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors that run each task on a virtual thread when the JVM
+ * supports them (Java 21+), so thousands of blocked tours cost almost
+ * nothing. On older JVMs they fall back to a pool that starts a platform
+ * thread whenever none is free and retires threads left idle: tasks here
+ * block on sockets, streams and locks, which would starve a pool with a
+ * fixed number of threads.
+ */
+public final class VirtualThreads {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private VirtualThreads() { }
+
+    /**
+     * Creates an executor that starts a virtual thread per task, or a cached thread pool if unavailable.
+     * @return executor (threads never keep the JVM alive)
+     */
+    public static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "tour-worker-" + THREADS.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -1,16 +1,14 @@
-import java.util.Random;
-
 /**
  * Factory for producing random Weather events.
  */
 public class WeatherFactory {
-    private static final Random RNG = new Random();
 
     /**
      * Returns a random Weather instance (uniform among the types).
+     * @param rng the tour's random source
      */
-    public static Weather randomWeather() {
-        int n = RNG.nextInt(4);
+    public static Weather randomWeather(TourRandom rng) {
+        int n = rng.nextInt(4);
         switch (n) {
             case 0: return new Hurricane();
             case 1: return new Tornado();
@@ -18,4 +16,16 @@ public class WeatherFactory {
             default: return new AcidRain();
         }
     }
+
+    /**
+     * Returns the weather with the given name (e.g. from a saved session).
+     * @param name weather name, case-insensitive
+     * @return the weather, or null if there is none by that name
+     */
+    public static Weather named(String name) {
+        for (Weather w : new Weather[] { new Hurricane(), new Tornado(), new Tsunami(), new AcidRain() }) {
+            if (w.getName().equalsIgnoreCase(name)) return w;
+        }
+        return null;
+    }
 }
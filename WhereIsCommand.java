@@ -0,0 +1,53 @@
+import java.util.Map;
+
+/**
+ * Admin command "whereis <item>": lists every location holding the item,
+ * plus any copies in the backpack. Only parsed for an admin tour (see
+ * TourSession.setAdmin), since it gives the scavenger hunt away.
+ */
+public class WhereIsCommand implements UserInputCommand {
+    /** Item name to look for. */
+    private final String itemName;
+
+    /**
+     * Constructs a WhereIsCommand.
+     * @param itemName item name (may be null/blank; validated in carryOut)
+     */
+    public WhereIsCommand(String itemName) { this.itemName = itemName; }
+
+    /**
+     * Looks the item up in the campus item index.
+     * @return locations and counts, or a not-found message
+     */
+    @Override
+    public String carryOut() {
+        if (itemName == null || itemName.isBlank())
+            return "Please specify which item to look for (e.g., \"whereis hat\").";
+        TourStatus ts = TourStatus.getInstance();
+        Campus campus = ts.getCampus();
+        if (campus == null) return "Campus not loaded.";
+
+        String name = itemName;
+        ItemDefinition def = campus.getItemDefinition(name);
+        if (def == null) {
+            NameIndex.Match<ItemDefinition> m = campus.getItemIndex().resolve(name, null);
+            if (!m.isUnique()) return "No item called \"" + itemName + "\" exists on this campus." + m.didYouMean();
+            def = m.get();
+        }
+
+        Map<Location, Integer> where = ts.getWorld().itemLocations(def.getName());
+        int carried = ts.getBackpackCount(def.getName());
+        if (where.isEmpty() && carried == 0) return "There is no " + def.getName() + " anywhere on campus right now.";
+
+        StringBuilder sb = new StringBuilder(def.getName()).append(":");
+        for (Map.Entry<Location, Integer> e : where.entrySet()) {
+            sb.append(System.lineSeparator()).append("  ").append(e.getKey().getName());
+            if (e.getValue() > 1) sb.append(" x").append(e.getValue());
+        }
+        if (carried > 0) {
+            sb.append(System.lineSeparator()).append("  your backpack");
+            if (carried > 1) sb.append(" x").append(carried);
+        }
+        return sb.toString();
+    }
+}
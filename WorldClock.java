@@ -0,0 +1,145 @@
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A wall clock for real-time tours: runs tasks every so often, for any
+ * number of tours, on one scheduler thread. Timers live in a hashed timing
+ * wheel, a ring of slots the clock steps through once per tick; a timer due
+ * in d ticks sits in slot (now + d) mod the ring size and waits out the full
+ * turns of the ring before it fires. Adding, firing and cancelling a timer
+ * all take constant time however many there are, so thousands of tours cost
+ * thousands of small objects rather than thousands of threads or scheduled
+ * tasks.
+ *
+ * Only the clock thread touches the wheel; new timers are handed to it
+ * through a queue. Due tasks are run on a separate executor so a slow task
+ * never holds up the clock.
+ */
+public class WorldClock implements AutoCloseable {
+    /** Slots in the wheel; a power of two. */
+    private static final int SLOTS = 512;
+
+    /** A repeating task on the clock. */
+    public static final class Timer {
+        private final Runnable task;
+        private final long periodTicks;
+        /** Full turns of the wheel left before it fires; clock thread only. */
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timer(Runnable task, long periodTicks) {
+            this.task = task;
+            this.periodTicks = periodTicks;
+        }
+
+        /** Stops the task; a run already started finishes. */
+        public void cancel() { cancelled = true; }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private final long tickNanos;
+    private final List<ArrayDeque<Timer>> wheel = new ArrayList<>(SLOTS);
+    private final ConcurrentLinkedQueue<Timer> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger timers = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService runner;
+    /** Ticks since the clock started; clock thread only. */
+    private long now;
+
+    /**
+     * Starts a clock.
+     * @param tick how often the clock advances; timers are rounded up to whole ticks
+     */
+    public WorldClock(Duration tick) {
+        if (tick.isNegative() || tick.isZero()) throw new IllegalArgumentException("Tick must be positive");
+        this.tickNanos = tick.toNanos();
+        for (int i = 0; i < SLOTS; i++) wheel.add(new ArrayDeque<>());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "world-clock");
+            t.setDaemon(true);
+            return t;
+        });
+        this.runner = VirtualThreads.newExecutor();
+        scheduler.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs a task every period, starting one period from now.
+     * @param period time between runs, at least one tick
+     * @param task task; runs on a pool thread, and may overlap its next run if it takes longer than the period
+     * @return the timer, to cancel it
+     */
+    public Timer every(Duration period, Runnable task) {
+        long ticks = Math.max(1, (period.toNanos() + tickNanos - 1) / tickNanos);
+        Timer t = new Timer(task, ticks);
+        timers.incrementAndGet();
+        added.add(t);
+        return t;
+    }
+
+    /** Number of timers on the clock; a cancelled one counts until the clock next passes it. */
+    public int timerCount() { return timers.get(); }
+
+    /** Moves the clock on one tick, firing whatever is due. Runs on the clock thread. */
+    private void advance() {
+        try {
+            for (Timer t; (t = added.poll()) != null; ) place(t, t.periodTicks);
+            ArrayDeque<Timer> slot = wheel.get((int) (now & (SLOTS - 1)));
+            List<Timer> due = new ArrayList<>();
+            for (int n = slot.size(); n > 0; n--) {
+                Timer t = slot.poll();
+                if (t.cancelled) {
+                    timers.decrementAndGet();
+                } else if (t.rounds > 0) {
+                    t.rounds--;
+                    slot.add(t);
+                } else {
+                    due.add(t);
+                }
+            }
+            now++;
+            for (Timer t : due) {
+                run(runner, t.task);
+                // period counted from this tick, so a timer due now is due again periodTicks later
+                place(t, t.periodTicks - 1);
+            }
+        } catch (RuntimeException e) {
+            // the clock must keep going for everyone else
+            System.err.println("World clock tick failed: " + e);
+        }
+    }
+
+    /** Puts a timer in the slot due the given number of ticks after the current one. */
+    private void place(Timer t, long ticksFromNow) {
+        long due = now + ticksFromNow;
+        t.rounds = ticksFromNow / SLOTS;
+        wheel.get((int) (due & (SLOTS - 1))).add(t);
+    }
+
+    private static void run(Executor executor, Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Timer task failed: " + e);
+            }
+        });
+    }
+
+    /** Stops the clock; timers stop firing. */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        runner.shutdown();
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * The parts of the campus a tour can change: which items lie where, which
+ * locations have been visited and which doors have been unlocked. The loaded
+ * Campus itself is a frozen template; every read or change a tour makes goes
+ * through one of these instead.
+ */
+public interface WorldState {
+
+    /**
+     * Number of copies of an item at a location.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @return count, 0 if none
+     */
+    int itemCount(Location loc, String itemName);
+
+    /**
+     * Definition of an item lying at a location.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @return definition, or null if no copy is there
+     */
+    ItemDefinition findItem(Location loc, String itemName);
+
+    /**
+     * Items lying at a location.
+     * @param loc location
+     * @return read-only stacks
+     */
+    Collection<ItemBag.Stack> itemStacks(Location loc);
+
+    /**
+     * Puts copies of an item at a location.
+     * @param loc location
+     * @param def item definition
+     * @param count number of copies
+     */
+    void addItems(Location loc, ItemDefinition def, int count);
+
+    /**
+     * Takes up to count copies of an item from a location.
+     * @param loc location
+     * @param itemName item name (case-insensitive)
+     * @param count copies wanted (ItemBag.ALL for every copy)
+     * @return number of copies taken
+     */
+    int removeItems(Location loc, String itemName, int count);
+
+    /**
+     * Locations holding an item, with counts.
+     * @param itemName item name (case-insensitive)
+     * @return read-only map, empty if the item is nowhere
+     */
+    Map<Location, Integer> itemLocations(String itemName);
+
+    /** True if the location has been visited. */
+    boolean isVisited(Location loc);
+
+    /** Records a visit to a location. */
+    void markVisited(Location loc);
+
+    /** Locations visited so far. */
+    Collection<Location> visitedLocations();
+
+    /** True if the door is currently locked. */
+    boolean isDoorLocked(Door door);
+
+    /** Unlocks a door. */
+    void unlockDoor(Door door);
+
+    /**
+     * Formats the items line for a location.
+     * @param loc location
+     * @return "Items: (none)" or "Items: a, b x3"
+     */
+    default String describeItems(Location loc) {
+        return ItemBag.describe(itemStacks(loc), "Items", "(none)");
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * What happens to a tour at the end of every turn, as a pipeline of four
+ * stages: schedule (start the teleport countdown every few turns, pick the
+ * next weather when none is coming), advance (count every timer down),
+ * resolve (teleport, let the weather strike, make unused items disappear)
+ * and emit (turn all of it into the lines the player reads). Each stage only
+ * looks at what the stages before it left in the tick, so the stages can be
+ * timed and changed on their own.
+ *
+ * A tick touches nothing but its own tour (and, for a shared world, the
+ * thread-safe SharedWorld), so many tours can be ticked at once: runAll
+ * splits a batch of tours' turns over a fork-join pool. A server in
+ * real-time mode ticks all its tours that way once a turn (see
+ * SessionRegistry.runInRealTime).
+ */
+public final class WorldTick {
+    /** Turns between picking a weather and it striking. */
+    public static final int WEATHER_TURNS = 5;
+    /** Turns run by one fork-join task before it stops splitting. */
+    private static final int BATCH = 16;
+
+    private final TourStatus status;
+    private final String tourId;
+
+    // schedule
+    private boolean teleportWarned;
+    private Weather scheduledWeather;
+    // advance
+    private int teleportRemaining = -1;
+    private int weatherRemaining = -1;
+    private List<Item> disappeared;
+    // resolve
+    private Location teleportedTo;
+    private Weather struck;
+    private boolean caught;
+    // emit
+    private String notices;
+
+    private WorldTick(TourStatus status, String tourId) {
+        this.status = status;
+        this.tourId = tourId;
+    }
+
+    /**
+     * Ends one turn of a tour. Must run as the tour (see TourStatus.runAs),
+     * on the thread allowed to change it.
+     * @param status tour state
+     * @param tourId tour id for recorded events (see TourSession.getTourId)
+     * @return the tick, with what happened and what to tell the player
+     */
+    public static WorldTick run(TourStatus status, String tourId) {
+        WorldTick tick = new WorldTick(status, tourId);
+        long t = System.nanoTime();
+        tick.schedule();
+        t = Metrics.lap("turn.schedule", t);
+        tick.advance();
+        t = Metrics.lap("turn.advance", t);
+        tick.resolve();
+        t = Metrics.lap("turn.resolve", t);
+        tick.notices = tick.emit();
+        Metrics.lap("turn.emit", t);
+        return tick;
+    }
+
+    /**
+     * Runs a batch of turns in parallel, each one tour's turn without a
+     * command: TourSession::tick, or something that first makes sure the
+     * tour is not handling input at the same time and then ticks it.
+     * @param turns one turn per tour
+     * @param pool pool to run on
+     * @return what each tour's player should be told, in the same order ("" for nothing)
+     */
+    public static List<String> runAll(List<? extends Supplier<String>> turns, ForkJoinPool pool) {
+        String[] out = new String[turns.size()];
+        pool.invoke(new Batch(turns, out, 0, out.length));
+        List<String> result = new ArrayList<>(out.length);
+        for (String s : out) result.add(s);
+        return result;
+    }
+
+    /** Splits a range of turns in half until it is small enough to run directly. */
+    private static final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<? extends Supplier<String>> turns;
+        private final String[] out;
+        private final int from;
+        private final int to;
+
+        Batch(List<? extends Supplier<String>> turns, String[] out, int from, int to) {
+            this.turns = turns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH) {
+                for (int i = from; i < to; i++) out[i] = turns.get(i).get();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(turns, out, from, mid), new Batch(turns, out, mid, to));
+        }
+    }
+
+    /** Starts new countdowns. */
+    private void schedule() {
+        teleportWarned = status.checkAndIncrementTeleportCounter();
+        if (!status.hasPendingWeather()) {
+            scheduledWeather = WeatherFactory.randomWeather(status.getRandom());
+            status.setPendingWeather(scheduledWeather, WEATHER_TURNS);
+        }
+    }
+
+    /** Counts every timer down by one turn; weather picked this turn waits until the next. */
+    private void advance() {
+        if (status.hasPendingTeleport()) teleportRemaining = status.decrementTeleportCountdown();
+        if (scheduledWeather == null && status.hasPendingWeather()) weatherRemaining = status.decrementPendingWeather();
+        disappeared = status.tickPendingDisappears();
+    }
+
+    /** Carries out whatever counted down to zero. */
+    private void resolve() {
+        if (teleportRemaining == 0) {
+            teleportedTo = status.consumeAndTeleport();
+            if (teleportedTo != null) WorldTriggerEvent.emit("teleport", tourId, teleportedTo.getName(), "teleported");
+        }
+        if (weatherRemaining == 0) {
+            struck = status.consumePendingWeather();
+            Location here = status.getCurrentLocation();
+            caught = here == null || !here.isIndoors();
+            WorldTriggerEvent.emit(struck.getName(), tourId, here == null ? null : here.getName(),
+                    caught ? "caught outside" : "sheltered");
+        }
+    }
+
+    /** The player's lines for this tick, each starting with a line break. */
+    private String emit() {
+        StringBuilder out = new StringBuilder();
+        if (teleportWarned) {
+            line(out, "");
+            line(out, "WARNING: A mysterious force is gathering... You will be teleported in 3 turns!");
+        }
+        if (teleportRemaining > 0) {
+            line(out, "Teleport warning: You will be transported in " + teleportRemaining + " turns.");
+        } else if (teleportedTo != null) {
+            line(out, "");
+            line(out, "*** You have been mysteriously teleported to " + teleportedTo.getName() + "! ***");
+            if (status.isDescribing()) line(out, TourSession.describeArrival(status, teleportedTo));
+        }
+
+        if (weatherRemaining > 0) {
+            String hint = status.getCampus().getShelterTable().describeFrom(status.getCurrentLocation(),
+                    status.getBackpackCount(MovementCommand.MASTER_KEY_NAME) > 0);
+            line(out, "Warning: " + status.getPendingWeather().getName() + " expected in " + weatherRemaining + " turns."
+                    + (hint == null ? "" : " (" + hint + ")"));
+        } else if (struck != null) {
+            line(out, "");
+            line(out, "*** Weather event: " + struck.getName() + " ***");
+            line(out, struck.getEventMessage());
+            if (caught) {
+                line(out, "You were outside when the " + struck.getName() + " struck. Game over.");
+                return out.toString();
+            }
+            line(out, "You're inside a building and are protected from the " + struck.getName() + ".");
+        } else if (scheduledWeather != null) {
+            line(out, "");
+            line(out, "Weather warning: " + scheduledWeather.getName() + " expected in " + WEATHER_TURNS + " turns.");
+        }
+
+        for (Item rem : disappeared) {
+            line(out, "The " + rem.getName() + " has disappeared from your backpack after not being used.");
+        }
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String text) {
+        out.append(System.lineSeparator()).append(text);
+    }
+
+    /** What to tell the player, each line starting with a line break; "" if nothing happened. */
+    public String getNotices() { return notices; }
+
+    /** The location teleported to this tick, or null. */
+    public Location getTeleportedTo() { return teleportedTo; }
+
+    /** True if the weather caught the player outside, ending the tour. */
+    public boolean endedTour() { return caught; }
+}
@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a world event hitting a player: a teleport or
+ * a weather strike.
+ */
+@Name("TourUMW.WorldTrigger")
+@Label("Teleport/Weather")
+@Category("TourUMW")
+@Description("A teleport or a weather event striking a player")
+public final class WorldTriggerEvent extends jdk.jfr.Event {
+    @Label("Kind")
+    @Description("teleport, or the weather's name")
+    public String kind;
+
+    @Label("Session")
+    @Description("Which tour it hit, as in TourUMW.Turn events")
+    public String session;
+
+    @Label("Location")
+    @Description("Where the player ended up (teleport) or was (weather)")
+    public String location;
+
+    @Label("Outcome")
+    @Description("teleported, sheltered or caught outside")
+    public String outcome;
+
+    /**
+     * Records a trigger if the event is being recorded.
+     * @param kind teleport, or the weather's name
+     * @param session tour id (see TourSession.getTourId)
+     * @param location where it happened
+     * @param outcome what became of the player
+     */
+    public static void emit(String kind, String session, String location, String outcome) {
+        WorldTriggerEvent e = new WorldTriggerEvent();
+        if (!e.shouldCommit()) return;
+        e.kind = kind;
+        e.session = session;
+        e.location = location;
+        e.outcome = outcome;
+        e.commit();
+    }
+}
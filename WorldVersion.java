@@ -0,0 +1,97 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * One loaded version of the campus file: the frozen campus, the shared
+ * world on it if tours share one, and what changed since the version
+ * before. Reloading the file appends a new version; tours move to it on
+ * their next command (see migrate), so reloading never pauses anyone and
+ * each tour sees one consistent campus for the whole of a turn. Old
+ * versions are dropped once no tour refers to them.
+ */
+public final class WorldVersion {
+    private final int number;
+    private final Campus campus;
+    private final SharedWorld shared;
+    private final CampusDiff diff;
+    /** The version that replaced this one, or null while this is the latest. */
+    private volatile WorldVersion next;
+
+    private WorldVersion(int number, Campus campus, SharedWorld shared, CampusDiff diff) {
+        this.number = number;
+        this.campus = campus;
+        this.shared = shared;
+        this.diff = diff;
+    }
+
+    /**
+     * First version of a campus.
+     * @param campus frozen campus
+     * @param shared shared world on it, or null if every tour has its own
+     * @return version 1
+     */
+    public static WorldVersion initial(Campus campus, SharedWorld shared) {
+        return new WorldVersion(1, campus, shared, null);
+    }
+
+    public int getNumber() { return number; }
+    public Campus getCampus() { return campus; }
+    /** Shared world on this version, or null if every tour has its own. */
+    public SharedWorld getSharedWorld() { return shared; }
+    /** What changed since the previous version (null for the first). */
+    public CampusDiff getDiff() { return diff; }
+
+    /** The newest version reachable from this one. */
+    public WorldVersion latest() {
+        WorldVersion v = this;
+        while (v.next != null) v = v.next;
+        return v;
+    }
+
+    /**
+     * Appends a newly loaded campus as the next version. Only one thread may append.
+     * @param newCampus frozen campus
+     * @return the new version
+     */
+    public WorldVersion successor(Campus newCampus) {
+        if (next != null) throw new IllegalStateException("Version " + number + " has already been replaced");
+        CampusDiff d = CampusDiff.between(campus, newCampus);
+        SharedWorld world = (shared == null) ? null : shared.migrateTo(newCampus, d);
+        WorldVersion v = new WorldVersion(number + 1, newCampus, world, d);
+        next = v;
+        return v;
+    }
+
+    /**
+     * Moves a tour on this version to a later one, translating its location,
+     * backpack and timers through each version's differences. The caller
+     * names the version (usually what latest() returned) rather than taking
+     * whatever is newest by the time this finishes, so it knows exactly which
+     * version the tour ended up on even if the campus is reloaded meanwhile.
+     * @param session tour on this version (not in use by another thread)
+     * @param target this version or a later one
+     * @return the same tour on target, or session itself if target is this version
+     * @throws IllegalArgumentException if target does not follow this version
+     */
+    public TourSession migrate(TourSession session, WorldVersion target) {
+        WorldVersion v = this;
+        for (; v != target && v.next != null; v = v.next) session = v.next.adopt(session);
+        if (v != target) throw new IllegalArgumentException("Version " + target.number + " does not follow version " + number);
+        return session;
+    }
+
+    private TourSession adopt(TourSession session) {
+        StringWriter text = new StringWriter();
+        SessionSnapshot.write(session, new PrintWriter(text));
+        session.suspend();
+        try {
+            return SessionSnapshot.read(new BufferedReader(new StringReader(text.toString())), campus, shared, diff);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not move tour to campus version " + number, e);
+        }
+    }
+}